@@ -0,0 +1,64 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Seeded PuzzleGenerator puzzles across grid sizes. The same seed gives the
+// same puzzle on every run, so results stay comparable between builds.
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GeneratedGridBenchmark {
+    @Param({"4", "6", "8", "10", "12", "14", "16"})
+    public int size;
+
+    @Param({"1"})
+    public long seed;
+
+    private String text;
+    private Object options;
+    private Object solver;
+    private int[][] rootState;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        text = Solver.generatedText(size, seed);
+        options = Solver.defaultOptions();
+        solver = Solver.parse(text);
+        if (!Solver.prepare(solver, options)) {
+            throw new IllegalStateException("Generated puzzle fails root propagation");
+        }
+        rootState = Solver.snapshot(solver);
+    }
+
+    @Benchmark
+    public boolean solvePuzzle() {
+        return Solver.solve(solver, options);
+    }
+
+    @Benchmark
+    public Object parse() {
+        return Solver.parse(text);
+    }
+
+    @Benchmark
+    public boolean search() {
+        Solver.load(solver, rootState);
+        return Solver.search(solver);
+    }
+}
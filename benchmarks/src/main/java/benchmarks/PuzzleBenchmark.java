@@ -0,0 +1,68 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The bundled PuzzleData puzzles, end to end and phase by phase
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PuzzleBenchmark {
+    @Param({"puzzle1", "puzzle2", "puzzle3"})
+    public String puzzle;
+
+    private String text;
+    private Object options;
+    private Object solver;     // model built and root-propagated once
+    private int[][] rootState; // domains and grid after root propagation
+
+    @Setup(Level.Trial)
+    public void setup() {
+        text = Solver.puzzleText(puzzle);
+        options = Solver.defaultOptions();
+        solver = Solver.parse(text);
+        if (!Solver.prepare(solver, options)) {
+            throw new IllegalStateException(puzzle + " fails root propagation");
+        }
+        rootState = Solver.snapshot(solver);
+    }
+
+    // solvePuzzle() rebuilds the model, propagates and searches on every call
+    @Benchmark
+    public boolean solvePuzzle() {
+        return Solver.solve(solver, options);
+    }
+
+    @Benchmark
+    public Object parse() {
+        return Solver.parse(text);
+    }
+
+    // AC-3 from full domains, without the group and row/column filtering
+    @Benchmark
+    public boolean ac3() {
+        return Solver.arcConsistencyPass(solver);
+    }
+
+    // Backtracking search from the root-propagated state
+    @Benchmark
+    public boolean search() {
+        Solver.load(solver, rootState);
+        return Solver.search(solver);
+    }
+}
@@ -0,0 +1,73 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Runtime distribution over a corpus of seeded generated puzzles, with and
+// without restarts. Every single-shot iteration solves the next puzzle of
+// the corpus from scratch, and warmup plus measurement go through the
+// corpus once, so the percentiles JMH prints are those of the runtime over
+// the measured instances. The median hardly moves between the schedules;
+// what restarts should shorten is the tail (p90 and up), and on these
+// puzzles Luby makes it longer (see RestartSchedule).
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = RestartBenchmark.WARMUP)
+@Measurement(iterations = RestartBenchmark.CORPUS - RestartBenchmark.WARMUP)
+@Fork(1)
+@State(Scope.Thread)
+public class RestartBenchmark {
+    static final int CORPUS = 80;
+    static final int WARMUP = 16;
+    private static final long RESTART_UNIT = 10_000; // nodes in the first run
+
+    @Param({"9"})
+    public int size;
+
+    // Forward checking alone leaves these puzzles hard enough to have a tail
+    @Param({"FORWARD_CHECK"})
+    public String level;
+
+    @Param({"none", "luby", "geometric"})
+    public String restarts;
+
+    @Param({"false", "true"})
+    public boolean backjumping;
+
+    private String[] corpus;
+    private Object options;
+    private Object solver;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        corpus = new String[CORPUS];
+        for (int k = 0; k < CORPUS; k++) {
+            corpus[k] = Solver.generatedText(size, k + 1);
+        }
+        options = Solver.options(level, backjumping, restarts, RESTART_UNIT, 1);
+        next = 0;
+    }
+
+    @Setup(Level.Iteration)
+    public void nextPuzzle() {
+        solver = Solver.parse(corpus[next++ % CORPUS]);
+    }
+
+    @Benchmark
+    public boolean solvePuzzle() {
+        return Solver.solve(solver, options);
+    }
+}
@@ -0,0 +1,207 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+
+// The solver lives in the default package, which a named package cannot
+// import, and JMH rejects benchmark classes in the default package. The
+// benchmarks therefore call the solver through method handles resolved
+// once here; held in static finals they are inlined like direct calls.
+final class Solver {
+    private static final MethodHandle PARSE;          // PuzzleParser.parse(String)
+    private static final MethodHandle NEW_OPTIONS;    // new SolverOptions()
+    private static final MethodHandle SOLVE;          // solvePuzzle(SolverOptions)
+    private static final MethodHandle PREPARE;        // prepare(SolverOptions)
+    private static final MethodHandle AC_PASS;        // arcConsistencyPass()
+    private static final MethodHandle SNAPSHOT;       // snapshot()
+    private static final MethodHandle LOAD;           // load(int[][])
+    private static final MethodHandle SEARCH;         // search()
+    private static final MethodHandle NEW_GENERATOR;  // new PuzzleGenerator(int, long)
+    private static final MethodHandle GENERATE;       // generate(int)
+    private static final MethodHandle LEVEL;          // propagationLevel(PropagationLevel)
+    private static final MethodHandle BACKJUMPING;    // backjumping(boolean)
+    private static final MethodHandle SEED;           // seed(long)
+    private static final MethodHandle RESTARTS;       // restarts(RestartSchedule)
+    private static final MethodHandle LUBY;           // RestartSchedule.luby(long)
+    private static final MethodHandle GEOMETRIC;      // RestartSchedule.geometric(long, double)
+    private static final MethodHandle ENGINE;         // engine(SolverEngine)
+    private static final Class<?> LEVEL_TYPE;
+    private static final Class<?> ENGINE_TYPE;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Class<?> solver = Class.forName("CSPPuzzleSolver");
+            Class<?> options = Class.forName("SolverOptions");
+            Class<?> parser = Class.forName("PuzzleParser");
+            Class<?> generator = Class.forName("PuzzleGenerator");
+            Class<?> generated = Class.forName("PuzzleGenerator$Puzzle");
+            Class<?> level = Class.forName("PropagationLevel");
+            Class<?> schedule = Class.forName("RestartSchedule");
+            Class<?> engine = Class.forName("SolverEngine");
+            // Package-private members need a lookup with private access
+            MethodHandles.Lookup inSolver = MethodHandles.privateLookupIn(solver, lookup);
+
+            PARSE = lookup.findStatic(parser, "parse", MethodType.methodType(solver, String.class));
+            NEW_OPTIONS = lookup.findConstructor(options, MethodType.methodType(void.class));
+            SOLVE = lookup.findVirtual(solver, "solvePuzzle", MethodType.methodType(boolean.class, options));
+            PREPARE = inSolver.findVirtual(solver, "prepare", MethodType.methodType(boolean.class, options));
+            AC_PASS = inSolver.findVirtual(solver, "arcConsistencyPass", MethodType.methodType(boolean.class));
+            SNAPSHOT = inSolver.findVirtual(solver, "snapshot", MethodType.methodType(int[][].class));
+            LOAD = inSolver.findVirtual(solver, "load", MethodType.methodType(void.class, int[][].class));
+            SEARCH = inSolver.findVirtual(solver, "search", MethodType.methodType(boolean.class));
+            NEW_GENERATOR = lookup.findConstructor(generator,
+                    MethodType.methodType(void.class, int.class, long.class));
+            GENERATE = lookup.findVirtual(generator, "generate", MethodType.methodType(generated, int.class));
+            LEVEL = lookup.findVirtual(options, "propagationLevel", MethodType.methodType(options, level));
+            BACKJUMPING = lookup.findVirtual(options, "backjumping", MethodType.methodType(options, boolean.class));
+            SEED = lookup.findVirtual(options, "seed", MethodType.methodType(options, long.class));
+            RESTARTS = lookup.findVirtual(options, "restarts", MethodType.methodType(options, schedule));
+            LUBY = lookup.findStatic(schedule, "luby", MethodType.methodType(schedule, long.class));
+            GEOMETRIC = lookup.findStatic(schedule, "geometric",
+                    MethodType.methodType(schedule, long.class, double.class));
+            ENGINE = lookup.findVirtual(options, "engine", MethodType.methodType(options, engine));
+            LEVEL_TYPE = level;
+            ENGINE_TYPE = engine;
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Solver() {
+    }
+
+    // Text of one of the PuzzleData puzzles, e.g. "puzzle3"
+    @SuppressWarnings("unchecked")
+    static String puzzleText(String name) {
+        try {
+            Class<?> data = Class.forName("PuzzleData");
+            List<String> lines = (List<String>) data.getMethod(name).invoke(null);
+            return String.join("\n", lines);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("No puzzle " + name, e);
+        }
+    }
+
+    // Puzzle 0 of a seeded generator, in text form
+    static String generatedText(int size, long seed) {
+        try {
+            Object generator = NEW_GENERATOR.invoke(size, seed);
+            return GENERATE.invoke(generator, 0).toString();
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static Object parse(String text) {
+        try {
+            return PARSE.invoke(text);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static Object defaultOptions() {
+        try {
+            return NEW_OPTIONS.invoke();
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    // Options at a PropagationLevel (by name), with or without backjumping,
+    // restarting on the given schedule ("none", "luby" or "geometric" with
+    // factor 2) in units of unit nodes
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Object options(String level, boolean backjumping, String restarts, long unit, long seed) {
+        try {
+            Object options = NEW_OPTIONS.invoke();
+            LEVEL.invoke(options, Enum.valueOf((Class) LEVEL_TYPE, level));
+            BACKJUMPING.invoke(options, backjumping);
+            SEED.invoke(options, seed);
+            switch (restarts) {
+                case "none":
+                    break;
+                case "luby":
+                    RESTARTS.invoke(options, LUBY.invoke(unit));
+                    break;
+                case "geometric":
+                    RESTARTS.invoke(options, GEOMETRIC.invoke(unit, 2.0));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown restart schedule " + restarts);
+            }
+            return options;
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    // Default options on the named SolverEngine ("CSP" or "SAT")
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Object engineOptions(String engine) {
+        try {
+            Object options = NEW_OPTIONS.invoke();
+            ENGINE.invoke(options, Enum.valueOf((Class) ENGINE_TYPE, engine));
+            return options;
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static boolean solve(Object solver, Object options) {
+        try {
+            return (boolean) SOLVE.invoke(solver, options);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static boolean prepare(Object solver, Object options) {
+        try {
+            return (boolean) PREPARE.invoke(solver, options);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static boolean arcConsistencyPass(Object solver) {
+        try {
+            return (boolean) AC_PASS.invoke(solver);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static int[][] snapshot(Object solver) {
+        try {
+            return (int[][]) SNAPSHOT.invoke(solver);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static void load(Object solver, int[][] state) {
+        try {
+            LOAD.invoke(solver, state);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static boolean search(Object solver) {
+        try {
+            return (boolean) SEARCH.invoke(solver);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException) return (RuntimeException) e;
+        if (e instanceof Error) throw (Error) e;
+        return new IllegalStateException(e);
+    }
+}
@@ -0,0 +1,142 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+// Every engine and search option must reach the same verdict and, where it
+// can count, the same number of solutions as the default search, which is
+// itself checked against exhaustive enumeration on the small puzzles.
+// The corpus is seeded, so a failure names a puzzle that reproduces.
+class EngineAgreementTest {
+    private static final int COUNT_LIMIT = 1000;
+
+    private static List<String> corpus; // generated on first use
+
+    static List<String> puzzles() {
+        if (corpus == null) corpus = TestPuzzles.corpus();
+        return corpus;
+    }
+
+    // Configurations that must agree on SAT/UNSAT and return a valid grid
+    private static Map<String, SolverOptions> solvers() {
+        Map<String, SolverOptions> solvers = new LinkedHashMap<>();
+        solvers.put("default", new SolverOptions());
+        solvers.put("forward checking", new SolverOptions().propagationLevel(PropagationLevel.FORWARD_CHECK));
+        solvers.put("MAC", new SolverOptions().propagationLevel(PropagationLevel.MAC));
+        solvers.put("MATCHING", new SolverOptions().allDifferentMode(AllDifferentMode.MATCHING));
+        solvers.put("MAC + MATCHING", new SolverOptions().propagationLevel(PropagationLevel.MAC)
+                .allDifferentMode(AllDifferentMode.MATCHING));
+        solvers.put("HALL", new SolverOptions().allDifferentMode(AllDifferentMode.HALL));
+        solvers.put("dom/wdeg", new SolverOptions().variableHeuristic(VariableHeuristic.DOM_WDEG));
+        solvers.put("CBJ", new SolverOptions().propagationLevel(PropagationLevel.FORWARD_CHECK).backjumping(true));
+        solvers.put("CBJ, 2 nogoods", new SolverOptions().propagationLevel(PropagationLevel.FORWARD_CHECK)
+                .backjumping(true).nogoodLimit(2));
+        solvers.put("CBJ without nogoods", new SolverOptions().backjumping(true).nogoodLimit(0));
+        solvers.put("CBJ + MAC", new SolverOptions().propagationLevel(PropagationLevel.MAC).backjumping(true));
+        // Budgets this small restart every few nodes, so root pruning runs
+        solvers.put("Luby restarts", new SolverOptions().propagationLevel(PropagationLevel.FORWARD_CHECK)
+                .restarts(RestartSchedule.luby(1)).seed(7));
+        solvers.put("geometric restarts", new SolverOptions().variableHeuristic(VariableHeuristic.DOM_WDEG)
+                .restarts(RestartSchedule.geometric(2, 2)).seed(7));
+        solvers.put("CBJ + restarts", new SolverOptions().propagationLevel(PropagationLevel.FORWARD_CHECK)
+                .backjumping(true).restarts(RestartSchedule.luby(1)).seed(7));
+        solvers.put("parallel", new SolverOptions().parallelism(2));
+        solvers.put("SAT", new SolverOptions().engine(SolverEngine.SAT));
+        solvers.put("SAT + MATCHING", new SolverOptions().engine(SolverEngine.SAT)
+                .allDifferentMode(AllDifferentMode.MATCHING));
+        return solvers;
+    }
+
+    // Configurations countSolutions() honours
+    private static Map<String, SolverOptions> counters() {
+        Map<String, SolverOptions> counters = new LinkedHashMap<>();
+        counters.put("default", new SolverOptions());
+        counters.put("forward checking", new SolverOptions().propagationLevel(PropagationLevel.FORWARD_CHECK));
+        counters.put("MAC", new SolverOptions().propagationLevel(PropagationLevel.MAC));
+        counters.put("MATCHING", new SolverOptions().allDifferentMode(AllDifferentMode.MATCHING));
+        counters.put("HALL", new SolverOptions().allDifferentMode(AllDifferentMode.HALL));
+        counters.put("MRV + degree", new SolverOptions().variableHeuristic(VariableHeuristic.MRV_DEGREE));
+        counters.put("dom/wdeg", new SolverOptions().variableHeuristic(VariableHeuristic.DOM_WDEG)
+                .valueHeuristic(ValueHeuristic.LEAST_CONSTRAINING));
+        counters.put("CBJ", new SolverOptions().backjumping(true));
+        return counters;
+    }
+
+    private static int referenceCount(String text) {
+        return PuzzleParser.parse(text).countSolutions(COUNT_LIMIT).getCount();
+    }
+
+    @Test
+    void corpusHoldsSolvableAndUnsolvablePuzzles() {
+        int unsolvable = 0;
+        int unique = 0;
+        for (String text : puzzles()) {
+            int count = referenceCount(text);
+            if (count == 0) unsolvable++;
+            if (count == 1) unique++;
+        }
+        assertTrue(unsolvable > 0, "no unsolvable variant in the corpus");
+        assertTrue(unique >= puzzles().size() / 2, "generated puzzles should be unique");
+    }
+
+    @ParameterizedTest
+    @MethodSource("puzzles")
+    void countMatchesExhaustiveEnumeration(String text) {
+        CSPPuzzleSolver puzzle = PuzzleParser.parse(text);
+        if (puzzle.getN() > 5) return;
+        assertEquals(TestPuzzles.bruteForceCount(puzzle), referenceCount(text), text);
+    }
+
+    @ParameterizedTest
+    @MethodSource("puzzles")
+    void solversAgreeOnSatisfiability(String text) {
+        boolean satisfiable = referenceCount(text) > 0;
+        for (Map.Entry<String, SolverOptions> entry : solvers().entrySet()) {
+            CSPPuzzleSolver solver = PuzzleParser.parse(text);
+            SolveStatus status = solver.solvePuzzle(entry.getValue(), new SearchLimits());
+            String context = entry.getKey() + " on\n" + text;
+            assertEquals(satisfiable ? SolveStatus.SOLVED : SolveStatus.UNSAT, status, context);
+            if (satisfiable) TestPuzzles.assertValidSolution(solver, context);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("puzzles")
+    void countersAgreeOnSolutionCount(String text) {
+        int expected = referenceCount(text);
+        for (Map.Entry<String, SolverOptions> entry : counters().entrySet()) {
+            SolutionCount count = PuzzleParser.parse(text).countSolutions(COUNT_LIMIT, entry.getValue());
+            assertEquals(expected, count.getCount(), entry.getKey() + " on\n" + text);
+            assertEquals(expected == 1, count.isUnique(), entry.getKey() + " on\n" + text);
+        }
+    }
+
+    @Test
+    void countStopsAtLimit() {
+        // No groups: every 4x4 Latin square is a solution
+        CSPPuzzleSolver open = new CSPPuzzleSolver(4);
+        SolutionCount count = open.countSolutions(2);
+        assertEquals(2, count.getCount());
+        assertTrue(count.isLimitReached());
+        assertEquals(SolveStatus.SOLVED, count.getStatus());
+        assertEquals(576, new CSPPuzzleSolver(4).countSolutions(COUNT_LIMIT).getCount());
+    }
+
+    @Test
+    void reSolvingWithAnotherSelectorGivesTheSameAnswer() {
+        String text = puzzles().get(0);
+        CSPPuzzleSolver solver = PuzzleParser.parse(text);
+        for (VariableHeuristic heuristic : new VariableHeuristic[] {VariableHeuristic.MRV,
+                VariableHeuristic.DOM_WDEG, VariableHeuristic.MRV_DEGREE, VariableHeuristic.MRV}) {
+            assertEquals(SolveStatus.SOLVED, solver.solvePuzzle(new SolverOptions().variableHeuristic(heuristic),
+                    new SearchLimits()), heuristic.name());
+            TestPuzzles.assertValidSolution(solver, heuristic.name());
+        }
+    }
+}
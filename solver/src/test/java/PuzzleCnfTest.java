@@ -0,0 +1,124 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.api.Test;
+
+// The CNF encoding: DIMACS export writes exactly the clauses the SAT
+// engine solves, those clauses read back into CdclSolver give the same
+// verdict, and a model decoded into the grid is a valid solution.
+class PuzzleCnfTest {
+
+    static List<String> puzzles() {
+        return EngineAgreementTest.puzzles();
+    }
+
+    // Variable count and clauses of a DIMACS text, checked against its
+    // problem line
+    private static final class Dimacs {
+        int variables;
+        final List<int[]> clauses = new ArrayList<>();
+
+        static Dimacs parse(String text) {
+            Dimacs dimacs = new Dimacs();
+            int declared = -1;
+            for (String line : text.split("\n")) {
+                if (line.isEmpty() || line.startsWith("c")) continue;
+                String[] fields = line.trim().split("\\s+");
+                if (fields[0].equals("p")) {
+                    assertEquals("cnf", fields[1], line);
+                    dimacs.variables = Integer.parseInt(fields[2]);
+                    declared = Integer.parseInt(fields[3]);
+                    continue;
+                }
+                assertEquals("0", fields[fields.length - 1], "clause not terminated: " + line);
+                int[] clause = new int[fields.length - 1];
+                for (int k = 0; k < clause.length; k++) {
+                    clause[k] = Integer.parseInt(fields[k]);
+                    assertTrue(clause[k] != 0 && Math.abs(clause[k]) <= dimacs.variables, line);
+                }
+                dimacs.clauses.add(clause);
+            }
+            assertEquals(declared, dimacs.clauses.size(), "clause count of the problem line");
+            return dimacs;
+        }
+    }
+
+    private static String export(CSPPuzzleSolver solver, SolverOptions options) throws IOException {
+        StringWriter out = new StringWriter();
+        solver.exportDimacs(out, options);
+        return out.toString();
+    }
+
+    @ParameterizedTest
+    @MethodSource("puzzles")
+    void dimacsRoundTripsTheEncoding(String text) throws IOException {
+        SolverOptions options = new SolverOptions().engine(SolverEngine.SAT);
+        PuzzleCnf cnf = PuzzleParser.parse(text).cnf(options);
+        Dimacs dimacs = Dimacs.parse(export(PuzzleParser.parse(text), options));
+        assertEquals(cnf.variableCount(), dimacs.variables);
+        assertEquals(cnf.clauses().size(), dimacs.clauses.size());
+        for (int k = 0; k < dimacs.clauses.size(); k++) {
+            assertArrayEquals(cnf.clauses().get(k), dimacs.clauses.get(k), "clause " + k);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("puzzles")
+    void exportedClausesSolveToAValidGrid(String text) throws IOException {
+        CSPPuzzleSolver solver = PuzzleParser.parse(text);
+        int N = solver.getN();
+        Dimacs dimacs = Dimacs.parse(export(solver, new SolverOptions().engine(SolverEngine.SAT)));
+        CdclSolver sat = new CdclSolver(dimacs.variables, new SolverStats());
+        for (int[] clause : dimacs.clauses) {
+            if (!sat.addClause(clause)) break;
+        }
+        SolveStatus status = sat.solve(new SearchLimits(), null);
+        boolean satisfiable = PuzzleParser.parse(text).countSolutions(1).getCount() > 0;
+        assertEquals(satisfiable ? SolveStatus.SOLVED : SolveStatus.UNSAT, status, text);
+        if (status != SolveStatus.SOLVED) return;
+
+        // Exactly one value per cell, read back as the exporter numbers them
+        int[] values = new int[N * N];
+        for (int c = 0; c < N * N; c++) {
+            for (int v = 1; v <= N; v++) {
+                if (sat.modelValue(c * N + v)) {
+                    assertEquals(0, values[c], "two values in cell " + c);
+                    values[c] = v;
+                }
+            }
+        }
+        solver.setSolution(values);
+        TestPuzzles.assertValidSolution(solver, "decoded model of\n" + text);
+    }
+
+    @ParameterizedTest
+    @MethodSource("puzzles")
+    void satEngineModelPassesIsValid(String text) {
+        CSPPuzzleSolver solver = PuzzleParser.parse(text);
+        SolveStatus status = solver.solvePuzzle(new SolverOptions().engine(SolverEngine.SAT), new SearchLimits());
+        if (status == SolveStatus.SOLVED) {
+            TestPuzzles.assertValidSolution(solver, "SAT engine on\n" + text);
+        } else {
+            assertEquals(SolveStatus.UNSAT, status, text);
+        }
+    }
+
+    @Test
+    void puzzleRefutedAtTheRootExportsAnEmptyClause() throws IOException {
+        // Two givens of the same value in one row
+        CSPPuzzleSolver solver = PuzzleParser.parse("4\n#0,0->1\n#0,3->1");
+        Dimacs dimacs = Dimacs.parse(export(solver, new SolverOptions().engine(SolverEngine.SAT)));
+        assertEquals(1, dimacs.clauses.size());
+        assertEquals(0, dimacs.clauses.get(0).length);
+        assertEquals(SolveStatus.UNSAT, PuzzleParser.parse("4\n#0,0->1\n#0,3->1")
+                .solvePuzzle(new SolverOptions().engine(SolverEngine.SAT), new SearchLimits()));
+    }
+}
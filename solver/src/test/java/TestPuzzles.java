@@ -0,0 +1,124 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Seeded corpus shared by the tests: uniquely solvable generated puzzles,
+// each followed by a copy with one group target raised by one, which
+// leaves it unsolvable or with a different solution count. Also an
+// exhaustive solution count that shares no code with the solver, for the
+// small sizes.
+final class TestPuzzles {
+    static final long SEED = 20_261_017L;
+    static final int PER_SIZE = 5;
+
+    private TestPuzzles() {
+    }
+
+    // Puzzle texts for N = 4 to 6, original then variant
+    static List<String> corpus() {
+        List<String> texts = new ArrayList<>();
+        for (int n = 4; n <= 6; n++) {
+            PuzzleGenerator generator = new PuzzleGenerator(n, SEED + n).maxCageSize(4);
+            for (int i = 0; i < PER_SIZE; i++) {
+                List<String> lines = generator.generate(i).lines;
+                texts.add(String.join("\n", lines));
+                texts.add(String.join("\n", raiseTarget(lines, i)));
+            }
+        }
+        return texts;
+    }
+
+    // Raises the target of one group line (not a given), picked by k
+    private static List<String> raiseTarget(List<String> lines, int k) {
+        List<String> groups = new ArrayList<>();
+        for (int i = 1; i < lines.size(); i++) {
+            if (!lines.get(i).startsWith("#")) groups.add(lines.get(i));
+        }
+        String group = groups.get(k % groups.size());
+        int comma = group.lastIndexOf(',');
+        String raised = group.substring(0, comma + 1) + (Integer.parseInt(group.substring(comma + 1).trim()) + 1);
+        List<String> variant = new ArrayList<>(lines);
+        variant.set(variant.indexOf(group), raised);
+        return variant;
+    }
+
+    // Solutions of the puzzle, counted by trying every Latin square that
+    // keeps the givens; only practical up to N = 5
+    static int bruteForceCount(CSPPuzzleSolver puzzle) {
+        int N = puzzle.getN();
+        return fillRow(puzzle, new int[N][N], 0, new boolean[N][N + 1]);
+    }
+
+    private static int fillRow(CSPPuzzleSolver puzzle, int[][] grid, int cell, boolean[][] columnUsed) {
+        int N = grid.length;
+        if (cell == N * N) return satisfiesGroups(puzzle, grid) ? 1 : 0;
+        int row = cell / N;
+        int col = cell % N;
+        int count = 0;
+        for (int v = 1; v <= N; v++) {
+            if (columnUsed[col][v] || usedInRow(grid[row], col, v)) continue;
+            int given = puzzle.getGivenAt(row, col);
+            if (given != 0 && given != v) continue;
+            grid[row][col] = v;
+            columnUsed[col][v] = true;
+            count += fillRow(puzzle, grid, cell + 1, columnUsed);
+            columnUsed[col][v] = false;
+        }
+        grid[row][col] = 0;
+        return count;
+    }
+
+    private static boolean usedInRow(int[] row, int before, int value) {
+        for (int c = 0; c < before; c++) {
+            if (row[c] == value) return true;
+        }
+        return false;
+    }
+
+    private static boolean satisfiesGroups(CSPPuzzleSolver puzzle, int[][] grid) {
+        for (Group group : puzzle.getGroups()) {
+            int[] values = new int[group.cells.size()];
+            for (int k = 0; k < values.length; k++) {
+                Cell cell = group.cells.get(k);
+                values[k] = grid[cell.row][cell.col];
+            }
+            Arrays.sort(values);
+            int result;
+            switch (group.operator) {
+                case '+':
+                    result = Arrays.stream(values).sum();
+                    break;
+                case '*':
+                    result = Arrays.stream(values).reduce(1, (a, b) -> a * b);
+                    break;
+                case '-':
+                    result = values[1] - values[0];
+                    break;
+                default:
+                    result = values[1] % values[0] == 0 ? values[1] / values[0] : -1;
+                    break;
+            }
+            if (result != group.target) return false;
+        }
+        return true;
+    }
+
+    // The solver's grid is complete, keeps the givens and breaks no
+    // constraint according to CSPPuzzleSolver.isValid
+    static void assertValidSolution(CSPPuzzleSolver solver, String context) {
+        int N = solver.getN();
+        for (int r = 0; r < N; r++) {
+            for (int c = 0; c < N; c++) {
+                int value = solver.getValueAt(r, c);
+                assertNotEquals(0, value, context + ": empty cell " + r + "," + c);
+                int given = solver.getGivenAt(r, c);
+                if (given != 0) assertEquals(given, value, context + ": given overwritten at " + r + "," + c);
+                assertTrue(solver.isValid(new Cell(r, c), value), context + ": constraint broken at " + r + "," + c);
+            }
+        }
+    }
+}
@@ -0,0 +1,10 @@
+// How rows and columns are propagated as AllDifferent constraints
+public enum AllDifferentMode {
+    // Pairwise x != y only (forward checking and AC-3 arcs)
+    PAIRWISE,
+    // Naked subsets whose union is one cell's domain, plus hidden singles
+    HALL,
+    // Full filtering from a maximum matching and its strongly connected
+    // components (Regin)
+    MATCHING
+}
@@ -0,0 +1,252 @@
+// Global AllDifferent filtering for every row and column. Lines 0..N-1 are
+// rows and N..2N-1 are columns; each has exactly N cells and N values, so
+// every value must be taken by some cell of the line.
+public class AllDifferentPropagator {
+    private final DomainStore domains;
+    private final int N;
+    private final AllDifferentMode mode;
+    private final int[][] lineCells; // line -> its N cell indexes
+
+    int lastConflict = -1; // line of the last wipe-out, which is its constraint id
+
+    // Ring buffer of lines waiting to be filtered plus in-queue flags
+    private final int[] queue;
+    private final boolean[] queued;
+    private int head, size;
+
+    // Matching state, reused between calls: value found for each line
+    // position last time (0 if none) and the scratch arrays for one line
+    private final int[][] lastMatch;
+    private final int[] positionOfValue; // value - 1 -> matched position or -1
+    private final int[] valueOfPosition; // position -> matched value or 0
+    private final int[] masks;
+    private int visited; // values seen by the current augmenting path search
+
+    // Tarjan SCC scratch over line positions
+    private final int[] order;
+    private final int[] low;
+    private final int[] component;
+    private final int[] stack;
+    private final boolean[] onStack;
+    private int counter, stackSize, components;
+
+    AllDifferentPropagator(int N, DomainStore domains, AllDifferentMode mode) {
+        this.domains = domains;
+        this.N = N;
+        this.mode = mode;
+
+        lineCells = new int[2 * N][N];
+        for (int i = 0; i < N; i++) {
+            for (int k = 0; k < N; k++) {
+                lineCells[i][k] = i * N + k;
+                lineCells[N + i][k] = k * N + i;
+            }
+        }
+        queue = new int[2 * N];
+        queued = new boolean[2 * N];
+
+        lastMatch = new int[2 * N][N];
+        positionOfValue = new int[N];
+        valueOfPosition = new int[N];
+        masks = new int[N];
+
+        order = new int[N];
+        low = new int[N];
+        component = new int[N];
+        stack = new int[N];
+        onStack = new boolean[N];
+    }
+
+    boolean enforceAll() {
+        for (int line = 0; line < 2 * N; line++) {
+            enqueue(line);
+        }
+        return propagate();
+    }
+
+    // Schedules the row and column of a cell whose domain changed
+    void cellChanged(int cell) {
+        enqueue(cell / N);
+        enqueue(N + cell % N);
+    }
+
+    boolean propagate() {
+        while (size > 0) {
+            int line = poll();
+            boolean consistent = mode == AllDifferentMode.MATCHING ? filterMatching(line) : filterHall(line);
+            if (!consistent) {
+                lastConflict = line;
+                clear();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    void clear() {
+        while (size > 0) poll();
+    }
+
+    // Naked subsets: if k cells have domains inside a k-value set taken
+    // from one of them, no other cell of the line can use those values.
+    // Hidden singles: a value left in only one cell's domain goes there.
+    private boolean filterHall(int line) {
+        int[] cells = lineCells[line];
+        for (int i = 0; i < N; i++) {
+            int set = domains.mask(cells[i]);
+            int setSize = Integer.bitCount(set);
+            if (setSize == N) continue;
+            int inside = 0;
+            for (int j = 0; j < N; j++) {
+                if ((domains.mask(cells[j]) & ~set) == 0) inside++;
+            }
+            if (inside > setSize) return false;
+            if (inside == setSize) {
+                for (int j = 0; j < N; j++) {
+                    int mask = domains.mask(cells[j]);
+                    if ((mask & ~set) != 0 && (mask & set) != 0) {
+                        narrow(cells[j], mask & ~set, cells);
+                    }
+                }
+            }
+        }
+
+        // once: values seen in at least one cell, twice: in two or more
+        int once = 0, twice = 0;
+        for (int j = 0; j < N; j++) {
+            int mask = domains.mask(cells[j]);
+            twice |= once & mask;
+            once |= mask;
+        }
+        if (once != DomainStore.fullMask(N)) return false;
+        int single = once & ~twice;
+        for (int j = 0; j < N && single != 0; j++) {
+            int mask = domains.mask(cells[j]);
+            int hidden = mask & single;
+            if (hidden == 0) continue;
+            // Two values that only this cell can take
+            if (Integer.bitCount(hidden) > 1) return false;
+            if (mask != hidden) narrow(cells[j], hidden, cells);
+            single &= ~hidden;
+        }
+        return true;
+    }
+
+    // Keeps only the (cell, value) pairs that belong to some maximum
+    // matching: matched pairs and pairs on an alternating cycle, i.e. the
+    // cell and the value's matched cell share a strongly connected component
+    private boolean filterMatching(int line) {
+        int[] cells = lineCells[line];
+        for (int v = 0; v < N; v++) {
+            positionOfValue[v] = -1;
+        }
+        // Warm start from the last matching, keeping pairs still allowed
+        for (int j = 0; j < N; j++) {
+            masks[j] = domains.mask(cells[j]);
+            int value = lastMatch[line][j];
+            if (value != 0 && (masks[j] & DomainStore.bit(value)) != 0 && positionOfValue[value - 1] < 0) {
+                valueOfPosition[j] = value;
+                positionOfValue[value - 1] = j;
+            } else {
+                valueOfPosition[j] = 0;
+            }
+        }
+        for (int j = 0; j < N; j++) {
+            visited = 0;
+            if (valueOfPosition[j] == 0 && !augment(j)) {
+                return false;
+            }
+        }
+        System.arraycopy(valueOfPosition, 0, lastMatch[line], 0, N);
+
+        counter = 0;
+        stackSize = 0;
+        components = 0;
+        for (int j = 0; j < N; j++) {
+            order[j] = -1;
+        }
+        for (int j = 0; j < N; j++) {
+            if (order[j] < 0) strongConnect(j);
+        }
+
+        for (int j = 0; j < N; j++) {
+            int keep = DomainStore.bit(valueOfPosition[j]);
+            for (int m = masks[j] & ~keep; m != 0; m &= m - 1) {
+                int value = DomainStore.lowestValue(m);
+                if (component[positionOfValue[value - 1]] == component[j]) {
+                    keep |= DomainStore.bit(value);
+                }
+            }
+            if (keep != masks[j]) narrow(cells[j], keep, cells);
+        }
+        return true;
+    }
+
+    // Kuhn augmenting path from position j
+    private boolean augment(int j) {
+        for (int m = masks[j]; m != 0; m &= m - 1) {
+            int value = DomainStore.lowestValue(m);
+            int bit = DomainStore.bit(value);
+            if ((visited & bit) != 0) continue;
+            visited |= bit;
+            int owner = positionOfValue[value - 1];
+            if (owner < 0 || augment(owner)) {
+                positionOfValue[value - 1] = j;
+                valueOfPosition[j] = value;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Tarjan over positions: j -> k when j may take the value matched to k
+    private void strongConnect(int j) {
+        order[j] = low[j] = counter++;
+        stack[stackSize++] = j;
+        onStack[j] = true;
+        for (int m = masks[j] & ~DomainStore.bit(valueOfPosition[j]); m != 0; m &= m - 1) {
+            int k = positionOfValue[DomainStore.lowestValue(m) - 1];
+            if (order[k] < 0) {
+                strongConnect(k);
+                low[j] = Math.min(low[j], low[k]);
+            } else if (onStack[k]) {
+                low[j] = Math.min(low[j], order[k]);
+            }
+        }
+        if (low[j] == order[j]) {
+            int k;
+            do {
+                k = stack[--stackSize];
+                onStack[k] = false;
+                component[k] = components;
+            } while (k != j);
+            components++;
+        }
+    }
+
+    // line holds the cells whose domains justify the narrowing
+    private void narrow(int cell, int mask, int[] line) {
+        domains.setMask(cell, mask);
+        domains.explainFrom(cell, line);
+        // The crossing line of the cell may now filter further, and so may
+        // this one
+        cellChanged(cell);
+    }
+
+    private void enqueue(int line) {
+        if (queued[line]) return;
+        queued[line] = true;
+        int tail = head + size;
+        if (tail >= queue.length) tail -= queue.length;
+        queue[tail] = line;
+        size++;
+    }
+
+    private int poll() {
+        int line = queue[head];
+        if (++head == queue.length) head = 0;
+        size--;
+        queued[line] = false;
+        return line;
+    }
+}
@@ -0,0 +1,226 @@
+// Arc consistency over the binary constraints of the puzzle: row/column
+// inequality and the two-cell '-' and '/' groups. Arcs are plain ints,
+// the worklist never holds the same arc twice, and cage arcs cache the
+// last support found for each value (residual supports, AC-3rm/AC-2001
+// style) so a value is only re-checked once that support is gone.
+public class ArcConsistency {
+    private final ConstraintIndex index;
+    private final DomainStore domains;
+    private final SolverStats stats; // revisions and removed values are counted here
+    private final int N;
+
+    // Arc a is the directed pair (arcCell[a], arcPeer[a]); the arcs leaving
+    // cell c are arcStart[c] .. arcStart[c + 1] - 1
+    private final int[] arcStart;
+    private final int[] arcCell;
+    private final int[] arcPeer;
+    private final int[] reverseArc;  // arc (peer, cell) for arc (cell, peer)
+    private final int[] arcCage;     // '-' or '/' group relating the pair, or -1 for x != y
+
+    private final int[] residue;     // arc * N + (value - 1) -> last support, 0 if none
+
+    // Ring buffer of arc ids plus an in-queue bitset
+    private final int[] queue;
+    private final long[] queued;
+    private int head, size;
+
+    int lastConflict = -1; // constraint id of the last wipe-out
+
+    ArcConsistency(ConstraintIndex index, DomainStore domains, SolverStats stats) {
+        this.index = index;
+        this.domains = domains;
+        this.stats = stats;
+        this.N = index.N;
+
+        int cellCount = index.cells.length;
+        arcStart = new int[cellCount + 1];
+        int arcCount = 0;
+        for (int c = 0; c < cellCount; c++) {
+            arcStart[c] = arcCount;
+            for (int peer : index.peers[c]) {
+                if (constrains(c, peer)) arcCount++;
+            }
+        }
+        arcStart[cellCount] = arcCount;
+
+        arcCell = new int[arcCount];
+        arcPeer = new int[arcCount];
+        arcCage = new int[arcCount];
+        int a = 0;
+        for (int c = 0; c < cellCount; c++) {
+            for (int peer : index.peers[c]) {
+                if (!constrains(c, peer)) continue;
+                arcCell[a] = c;
+                arcPeer[a] = peer;
+                arcCage[a] = index.sameLine(c, peer) ? -1 : binaryCage(c, peer);
+                a++;
+            }
+        }
+
+        // Peers are symmetric, so every arc has its reverse
+        reverseArc = new int[arcCount];
+        for (a = 0; a < arcCount; a++) {
+            int peer = arcPeer[a];
+            for (int b = arcStart[peer]; b < arcStart[peer + 1]; b++) {
+                if (arcPeer[b] == arcCell[a]) {
+                    reverseArc[a] = b;
+                    break;
+                }
+            }
+        }
+
+        residue = new int[arcCount * N];
+        queue = new int[Math.max(arcCount, 1)];
+        queued = new long[(arcCount + 63) >>> 6];
+    }
+
+    // Group whose binary relation restricts the pair, or -1. '+' and '*'
+    // are always consistent between two values and add nothing here. As in
+    // the pairwise check this replaces, cells sharing a row or column are
+    // related by inequality only.
+    private int binaryCage(int cell1, int cell2) {
+        int cage = index.sharedCage(cell1, cell2);
+        if (cage < 0) return -1;
+        char operator = index.cageOperator[cage];
+        return operator == '-' || operator == '/' ? cage : -1;
+    }
+
+    private boolean constrains(int cell1, int cell2) {
+        return index.sameLine(cell1, cell2) || binaryCage(cell1, cell2) >= 0;
+    }
+
+    // Full AC-3 pass over every arc
+    boolean enforceAll() {
+        for (int a = 0; a < arcStart[arcStart.length - 1]; a++) {
+            enqueue(a);
+        }
+        return propagate();
+    }
+
+    // Schedules the arcs into a cell whose domain changed
+    void cellChanged(int cell) {
+        enqueueArcsInto(cell, -1);
+    }
+
+    boolean propagate() {
+        while (size > 0) {
+            int arc = poll();
+            if (revise(arc)) {
+                int cell = arcCell[arc];
+                if (domains.isEmpty(cell)) {
+                    lastConflict = arcCage[arc] >= 0
+                            ? index.cageConstraint(arcCage[arc]) : index.lineConstraint(cell, arcPeer[arc]);
+                    clearQueue();
+                    return false;
+                }
+                // Every other neighbour of the cell has to be rechecked
+                enqueueArcsInto(cell, arcPeer[arc]);
+            }
+        }
+        return true;
+    }
+
+    private void enqueueArcsInto(int cell, int skipPeer) {
+        for (int a = arcStart[cell]; a < arcStart[cell + 1]; a++) {
+            if (arcPeer[a] != skipPeer) {
+                enqueue(reverseArc[a]);
+            }
+        }
+    }
+
+    // Removes the values of arcCell[arc] without support in arcPeer[arc]
+    private boolean revise(int arc) {
+        stats.arcRevisions++;
+        int x = arcCell[arc];
+        int y = arcPeer[arc];
+        int dx = domains.mask(x);
+        int dy = domains.mask(y);
+        int cage = arcCage[arc];
+
+        // x != y only loses the value that y is already fixed to
+        if (cage < 0) {
+            if (Integer.bitCount(dy) == 1 && (dx & dy) != 0) {
+                domains.setMask(x, dx & ~dy);
+                domains.explainFrom(x, y);
+                stats.arcValuesRemoved++;
+                return true;
+            }
+            return false;
+        }
+
+        int valuesToRemove = 0;
+        int base = arc * N - 1;
+        for (int m1 = dx; m1 != 0; m1 &= m1 - 1) {
+            int value = DomainStore.lowestValue(m1);
+            int support = residue[base + value];
+            if (support != 0 && (dy & DomainStore.bit(support)) != 0) {
+                continue;
+            }
+            support = findSupport(cage, value, dy);
+            if (support != 0) {
+                residue[base + value] = support;
+            } else {
+                valuesToRemove |= DomainStore.bit(value);
+            }
+        }
+
+        if (valuesToRemove != 0) {
+            domains.setMask(x, dx & ~valuesToRemove);
+            domains.explainFrom(x, y);
+            stats.arcValuesRemoved += Integer.bitCount(valuesToRemove);
+            return true;
+        }
+        return false;
+    }
+
+    private int findSupport(int cage, int value, int dy) {
+        for (int m2 = dy; m2 != 0; m2 &= m2 - 1) {
+            int other = DomainStore.lowestValue(m2);
+            if (checkGroupConsistency(cage, value, other)) {
+                return other;
+            }
+        }
+        return 0;
+    }
+
+    private boolean checkGroupConsistency(int cage, int value1, int value2) {
+        int target = index.cageTarget[cage];
+        int size = index.cageCells[cage].length;
+        switch (index.cageOperator[cage]) {
+            case '-':
+                return size == 2 && Math.abs(value1 - value2) == target;
+            case '/':
+                if (size != 2) return false;
+                int larger = Math.max(value1, value2);
+                int smaller = Math.min(value1, value2);
+                return smaller != 0 && larger / smaller == target && larger % smaller == 0;
+            default:
+                return true;
+        }
+    }
+
+    private void enqueue(int arc) {
+        long bit = 1L << arc;
+        if ((queued[arc >>> 6] & bit) != 0) return;
+        queued[arc >>> 6] |= bit;
+        int tail = head + size;
+        if (tail >= queue.length) tail -= queue.length;
+        queue[tail] = arc;
+        size++;
+    }
+
+    private int poll() {
+        int arc = queue[head];
+        if (++head == queue.length) head = 0;
+        size--;
+        queued[arc >>> 6] &= ~(1L << arc);
+        return arc;
+    }
+
+    void clearQueue() {
+        while (size > 0) {
+            poll();
+        }
+        head = 0;
+    }
+}
@@ -0,0 +1,11 @@
+// Tries values from smallest to largest
+public class AscendingValueOrderer implements ValueOrderer {
+    @Override
+    public int order(int cell, int mask, int[] out) {
+        int count = 0;
+        for (int m = mask; m != 0; m &= m - 1) {
+            out[count++] = DomainStore.lowestValue(m);
+        }
+        return count;
+    }
+}
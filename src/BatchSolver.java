@@ -0,0 +1,256 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+// Bulk solver: streams every puzzle from the given files and directories
+// through a fixed pool of workers and writes one tab-separated line per
+// puzzle as soon as it finishes:
+//
+//   source  status  nanos  nodes  solution
+//
+// status is SOLVED, UNSAT, TIMEOUT, CANCELLED or ERROR; solution lists
+// the rows separated by '/' (or holds the error message). A file may hold
+// several puzzles back to back, each starting with its size line; a
+// malformed puzzle is reported and skipped. At most 2 * threads puzzles
+// are read ahead of the workers, so memory stays flat on any corpus size.
+// --timeout-ms and --max-nodes bound each puzzle on its own, so one hard
+// puzzle cannot hold a worker for the rest of the run. --engine sat solves
+// with the CDCL backend instead of the CSP search, so the two can be
+// compared on the same corpus. A failed write stops the run: no more
+// puzzles are queued and finish() throws the error.
+//
+// Usage: java BatchSolver [--threads N] [--out FILE] [--timeout-ms MS] [--max-nodes N]
+//                         [--engine csp|sat] <file-or-directory>...
+public class BatchSolver {
+    private final int threads;
+    private final SolverOptions options;
+    private final long timeoutMillis; // per puzzle, 0 for none
+    private final long maxNodes;      // per puzzle
+    private final Writer out;
+    private final ExecutorService pool;
+    private final Semaphore inFlight;
+
+    private final AtomicLong solved = new AtomicLong();
+    private final AtomicLong unsat = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicReference<IOException> writeFailure = new AtomicReference<>();
+
+    public BatchSolver(int threads, SolverOptions options, Writer out) {
+        this(threads, options, 0, Long.MAX_VALUE, out);
+    }
+
+    public BatchSolver(int threads, SolverOptions options, long timeoutMillis, long maxNodes, Writer out) {
+        this.threads = threads;
+        this.options = options;
+        this.timeoutMillis = timeoutMillis;
+        this.maxNodes = maxNodes;
+        this.out = out;
+        this.pool = Executors.newFixedThreadPool(threads);
+        this.inFlight = new Semaphore(2 * threads);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path outFile = null;
+        long timeoutMillis = 0;
+        long maxNodes = Long.MAX_VALUE;
+        SolverEngine engine = SolverEngine.CSP;
+        List<Path> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--out") && i + 1 < args.length) {
+                outFile = Paths.get(args[++i]);
+            } else if (args[i].equals("--timeout-ms") && i + 1 < args.length) {
+                timeoutMillis = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--max-nodes") && i + 1 < args.length) {
+                maxNodes = Long.parseLong(args[++i]);
+            } else if (args[i].equals("--engine") && i + 1 < args.length) {
+                engine = SolverEngine.valueOf(args[++i].toUpperCase(Locale.ROOT));
+            } else {
+                inputs.add(Paths.get(args[i]));
+            }
+        }
+        if (inputs.isEmpty()) {
+            System.err.println("Usage: java BatchSolver [--threads N] [--out FILE] [--timeout-ms MS] [--max-nodes N]"
+                    + " [--engine csp|sat] <file-or-directory>...");
+            System.exit(2);
+        }
+
+        Writer out = outFile == null
+                ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                : Files.newBufferedWriter(outFile, StandardCharsets.UTF_8);
+        long start = System.nanoTime();
+        BatchSolver batch = new BatchSolver(threads, new SolverOptions().engine(engine), timeoutMillis, maxNodes, out);
+        Throwable primary = null;
+        try {
+            for (Path input : inputs) {
+                batch.submitAll(input);
+            }
+        } catch (Throwable e) {
+            primary = e;
+            throw e;
+        } finally {
+            // Queued puzzles still finish if reading or writing failed. A
+            // failure on the way out is suppressed by the one that stopped
+            // the input, as try-with-resources would do
+            try {
+                try {
+                    batch.finish();
+                } finally {
+                    out.close();
+                }
+            } catch (Throwable e) {
+                if (primary == null) throw e;
+                // submit() rethrows the same write failure finish() does
+                if (e != primary) primary.addSuppressed(e);
+            }
+        }
+        System.err.printf("solved=%d unsat=%d timeout=%d cancelled=%d errors=%d in %.1f ms%n",
+                batch.solved.get(), batch.unsat.get(), batch.timedOut.get(), batch.cancelled.get(),
+                batch.errors.get(), (System.nanoTime() - start) / 1e6);
+    }
+
+    // Queues every puzzle under a file or directory, blocking while the
+    // workers are behind
+    public void submitAll(Path input) throws IOException, InterruptedException {
+        if (Files.isDirectory(input)) {
+            try (Stream<Path> files = Files.walk(input)) {
+                for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                    submitFile(file);
+                }
+            }
+        } else {
+            submitFile(input);
+        }
+    }
+
+    private void submitFile(Path file) throws IOException, InterruptedException {
+        try (PuzzleParser parser = new PuzzleParser(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+            int count = 0;
+            while (true) {
+                String source = file + ":" + ++count;
+                CSPPuzzleSolver solver;
+                try {
+                    solver = parser.next();
+                } catch (PuzzleFormatException e) {
+                    // The parser resumes at the next puzzle of the file
+                    errors.incrementAndGet();
+                    write(source + "\tERROR\t0\t0\t" + e.getMessage());
+                    continue;
+                }
+                if (solver == null) break;
+                submit(source, solver);
+            }
+        }
+    }
+
+    private void submit(String source, CSPPuzzleSolver solver) throws IOException, InterruptedException {
+        inFlight.acquire();
+        IOException failure = writeFailure.get();
+        if (failure != null) {
+            inFlight.release();
+            throw failure;
+        }
+        try {
+            pool.execute(() -> {
+                try {
+                    // Nobody will see the line once the output has failed
+                    if (writeFailure.get() == null) write(solve(source, solver));
+                } catch (IOException e) {
+                    writeFailure.compareAndSet(null, e);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    private String solve(String source, CSPPuzzleSolver solver) {
+        long start = System.nanoTime();
+        try {
+            SearchLimits limits = new SearchLimits().maxNodes(maxNodes);
+            if (timeoutMillis > 0) limits.timeout(timeoutMillis, TimeUnit.MILLISECONDS);
+            SolveStatus status = solver.solvePuzzle(options, limits);
+            long nanos = System.nanoTime() - start;
+            boolean ok = status == SolveStatus.SOLVED;
+            counter(status).incrementAndGet();
+            return source + '\t' + status + '\t' + nanos + '\t' + solver.getNodeCount()
+                    + '\t' + (ok ? formatGrid(solver) : "");
+        } catch (RuntimeException e) {
+            errors.incrementAndGet();
+            return source + "\tERROR\t" + (System.nanoTime() - start) + "\t0\t" + e;
+        }
+    }
+
+    private AtomicLong counter(SolveStatus status) {
+        switch (status) {
+            case SOLVED:
+                return solved;
+            case UNSAT:
+                return unsat;
+            case TIMEOUT:
+                return timedOut;
+            case CANCELLED:
+                return cancelled;
+            default:
+                return errors;
+        }
+    }
+
+    private static String formatGrid(CSPPuzzleSolver solver) {
+        int n = solver.getN();
+        StringBuilder sb = new StringBuilder(n * n * 3);
+        for (int i = 0; i < n; i++) {
+            if (i > 0) sb.append('/');
+            for (int j = 0; j < n; j++) {
+                if (j > 0) sb.append(',');
+                sb.append(solver.getValueAt(i, j));
+            }
+        }
+        return sb.toString();
+    }
+
+    private void write(String line) throws IOException {
+        synchronized (out) {
+            out.write(line);
+            out.write('\n');
+            out.flush();
+        }
+    }
+
+    // Waits for every queued puzzle to be written; throws the first write
+    // failure, if any
+    public void finish() throws IOException, InterruptedException {
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        IOException failure = writeFailure.get();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+}
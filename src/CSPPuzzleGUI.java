@@ -2,9 +2,10 @@ import javax.swing.*;
 import java.awt.*;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 public class CSPPuzzleGUI extends JFrame {
-    private static final int CELL_SIZE = 60;
+    private static final int LIVE_VIEW_FPS = 10; // cap on progress and live grid updates
     private static int GRID_SIZE;
     private final List<Color> groupColors;
     private Random random;
@@ -62,14 +63,22 @@ public class CSPPuzzleGUI extends JFrame {
     }
     
     private CSPPuzzleSolver solver;
-    private Map<Cell, Integer> groupColorMap;
-    private JPanel gridPanel;
-    private List<Group> groups;
+    private PuzzleGridView gridView;
+
+    // Background solve: the worker runs the search, the timer polls its
+    // progress on the EDT, and Cancel trips the token
+    private SwingWorker<SolveStatus, Void> solveWorker;
+    private CancellationToken cancelToken;
+    private SolveProgress progress;
+    private javax.swing.Timer progressTimer;
+    private long lastNodes;
+    private long lastTick;
+    private JButton solveButton;
+    private JButton cancelButton;
+    private JCheckBox liveViewBox;
+    private JLabel statusLabel;
 
     public CSPPuzzleGUI() {
-        solver = new CSPPuzzleSolver(GRID_SIZE);
-        groupColorMap = new HashMap<>();
-        groups = new ArrayList<>();
         random = new Random();
         groupColors = new ArrayList<>();
         
@@ -78,141 +87,138 @@ public class CSPPuzzleGUI extends JFrame {
     }
 
     private void setupGroups() {
-        GRID_SIZE = Integer.parseInt(data.get(0));
+        solver = PuzzleParser.parse(data);
+        GRID_SIZE = solver.getN();
 
-        solver = new CSPPuzzleSolver(GRID_SIZE);
-        for(int i = 1; i < data.size(); i++){
-            if (data.get(i).startsWith("#")) {
-                continue;
-            }
-
-            String[] data1 = data.get(i).split("->");
-
-            List<Cell> cells = new ArrayList<>();
-            String[] cellsData = data1[0]
-                        .split(";");
-
-            for(String cellData : cellsData){
-                String[] cords = cellData.split(",");
-
-                Cell cell = new Cell(Integer.parseInt(cords[0]),
-                            Integer.parseInt(cords[1]));
-
-                cells.add(cell);
-            }
-
-            String[] result = data1[1].split(",");
-
-            char operator = result[0].charAt(0);
-            int target = Integer.parseInt(result[1]);
-            
-            addGroup(cells, operator, target, i);
-        }    
-    }
-
-    private void addGroup(List<Cell> cells, char operator, int target, int colorIndex) {
-        Group group = new Group(cells, operator, target);
-        groups.add(group);
-        solver.addGroup(cells, operator, target);
-        
-        // Generate a new distinct color if needed
-        while (groupColors.size() <= colorIndex) {
+        // One distinct color per group, in group order
+        while (groupColors.size() < solver.getGroups().size()) {
             groupColors.add(generateDistinctColor(groupColors));
         }
-        
-        // Assign color to each cell in the group
-        for (Cell cell : cells) {
-            groupColorMap.put(cell, colorIndex);
-        }
     }
 
     private void initializeGUI() {
         setTitle("CSP Puzzle Solver");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         
-        gridPanel = new JPanel(new GridLayout(GRID_SIZE, GRID_SIZE));
-        gridPanel.setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
-        
-        // Create grid cells
-        for (int i = 0; i < GRID_SIZE; i++) {
-            for (int j = 0; j < GRID_SIZE; j++) {
-                JPanel cellPanel = createCellPanel(i, j);
-                gridPanel.add(cellPanel);
-            }
-        }
+        gridView = new PuzzleGridView(solver, groupColors);
         
         JPanel mainPanel = new JPanel(new BorderLayout());
-        mainPanel.add(gridPanel, BorderLayout.CENTER);
+        mainPanel.add(gridView, BorderLayout.CENTER);
         
         JPanel buttonPanel = new JPanel();
-        JButton solveButton = new JButton("Solve Puzzle");
+        solveButton = new JButton("Solve Puzzle");
         solveButton.addActionListener(e -> solvePuzzle());
         buttonPanel.add(solveButton);
         
-        mainPanel.add(buttonPanel, BorderLayout.SOUTH);
+        cancelButton = new JButton("Cancel");
+        cancelButton.setEnabled(false);
+        cancelButton.addActionListener(e -> cancelToken.cancel());
+        buttonPanel.add(cancelButton);
+        
+        liveViewBox = new JCheckBox("Live view");
+        liveViewBox.setToolTipText("Show the search's partial grid while it runs");
+        buttonPanel.add(liveViewBox);
+        
+        statusLabel = new JLabel(" ");
+        statusLabel.setBorder(BorderFactory.createEmptyBorder(0, 10, 5, 10));
+        
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.add(buttonPanel, BorderLayout.CENTER);
+        southPanel.add(statusLabel, BorderLayout.SOUTH);
+        mainPanel.add(southPanel, BorderLayout.SOUTH);
+        
+        progressTimer = new javax.swing.Timer(1000 / LIVE_VIEW_FPS, e -> showProgress());
         
         add(mainPanel);
         pack();
         setLocationRelativeTo(null);
     }
 
-    private JPanel createCellPanel(int row, int col) {
-        JPanel cellPanel = new JPanel(new BorderLayout());
-        cellPanel.setPreferredSize(new Dimension(CELL_SIZE, CELL_SIZE));
-        cellPanel.setBorder(BorderFactory.createLineBorder(Color.BLACK));
-        
-        // Set background color based on group
-        Cell cell = new Cell(row, col);
-        Integer colorIndex = groupColorMap.get(cell);
-        if (colorIndex != null) {
-            cellPanel.setBackground(groupColors.get(colorIndex));
-        } else {
-            cellPanel.setBackground(Color.WHITE);
-        }
-        
-        // Add operator and target for first cell in each group
-        for (Group group : groups) {
-            if (group.cells.get(0).equals(cell)) {
-                JLabel operatorLabel = new JLabel(group.operator + " " + group.target);
-                operatorLabel.setFont(new Font("Arial", Font.BOLD, 12));
-                cellPanel.add(operatorLabel, BorderLayout.NORTH);
-                break;
+    // Runs the search on a SwingWorker so the window stays responsive
+    private void solvePuzzle() {
+        cancelToken = new CancellationToken();
+        progress = new SolveProgress();
+        SearchLimits limits = new SearchLimits().token(cancelToken).progress(progress);
+        solveWorker = new SwingWorker<SolveStatus, Void>() {
+            @Override
+            protected SolveStatus doInBackground() {
+                return solver.solvePuzzle(new SolverOptions(), limits);
+            }
+            
+            @Override
+            protected void done() {
+                solveFinished();
             }
+        };
+        
+        solveButton.setEnabled(false);
+        cancelButton.setEnabled(true);
+        statusLabel.setText("Solving...");
+        lastNodes = 0;
+        lastTick = System.nanoTime();
+        progress.requestSnapshot();
+        progressTimer.start();
+        solveWorker.execute();
+    }
+    
+    // Timer tick on the EDT: node rate and depth, plus the latest partial
+    // grid when the live view is on. The search copies its grid only when
+    // asked, so at most one copy is made per tick.
+    private void showProgress() {
+        long now = System.nanoTime();
+        long nodes = progress.getNodes();
+        double perSecond = (nodes - lastNodes) / ((now - lastTick) / 1e9);
+        lastNodes = nodes;
+        lastTick = now;
+        statusLabel.setText(String.format("Solving... %,d nodes (%,.0f/s), depth %d",
+                nodes, perSecond, progress.getDepth()));
+        
+        if (liveViewBox.isSelected()) {
+            int[] partial = progress.takeSnapshot();
+            if (partial != null) {
+                updateGrid(partial);
+            }
+            progress.requestSnapshot();
         }
-        
-        return cellPanel;
     }
-
-    private void solvePuzzle() {
-        if (solver.solvePuzzle()) {
-            updateGrid();
-        } else {
+    
+    private void solveFinished() {
+        progressTimer.stop();
+        solveButton.setEnabled(true);
+        cancelButton.setEnabled(false);
+        SolveStatus status;
+        try {
+            status = solveWorker.get();
+        } catch (ExecutionException e) {
+            statusLabel.setText("Solve failed: " + e.getCause());
+            return;
+        } catch (InterruptedException e) {
+            // Not expected on the event thread once the worker is done
+            Thread.currentThread().interrupt();
+            statusLabel.setText("Solve interrupted");
+            return;
+        }
+        SolverStats stats = solver.getStats();
+        statusLabel.setText(String.format("%s: %,d nodes in %.1f ms", status, stats.getNodes(), stats.getSearchNanos() / 1e6));
+        // A stopped search has backtracked all the way, leaving just the givens
+        updateGrid(null);
+        if (status == SolveStatus.UNSAT) {
             JOptionPane.showMessageDialog(this, "No solution exists!", "Solution Not Found", JOptionPane.ERROR_MESSAGE);
         }
     }
 
-    private void updateGrid() {
-        gridPanel.removeAll();
-        
-        for (int i = 0; i < GRID_SIZE; i++) {
-            for (int j = 0; j < GRID_SIZE; j++) {
-                JPanel cellPanel = createCellPanel(i, j);
-                
-                // Add solved number
-                int value = solver.getValueAt(i, j);
-                if (value != 0) {
-                    JLabel numberLabel = new JLabel(String.valueOf(value));
-                    numberLabel.setFont(new Font("Arial", Font.BOLD, 20));
-                    numberLabel.setHorizontalAlignment(SwingConstants.CENTER);
-                    cellPanel.add(numberLabel, BorderLayout.CENTER);
+    // Shows the solver's grid, or a snapshot of a running search (values
+    // by cell index); only the cells that changed are repainted
+    private void updateGrid(int[] values) {
+        if (values == null) {
+            values = new int[GRID_SIZE * GRID_SIZE];
+            for (int i = 0; i < GRID_SIZE; i++) {
+                for (int j = 0; j < GRID_SIZE; j++) {
+                    values[i * GRID_SIZE + j] = solver.getValueAt(i, j);
                 }
-                
-                gridPanel.add(cellPanel);
             }
         }
-        
-        gridPanel.revalidate();
-        gridPanel.repaint();
+        gridView.setValues(values);
     }
 
     public static void main(String[] args) {
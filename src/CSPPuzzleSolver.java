@@ -1,41 +1,128 @@
+import java.io.IOException;
+import java.io.Writer;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 
 public class CSPPuzzleSolver {
     private int N; // Grid size
     private int[][] grid; //N by N 
     private List<Group> groups; // total groups 
-    private Map<Cell, Set<Integer>> domains; //csp
+    private int[] givens; // cell index -> fixed value, 0 where none
+    private DomainStore domains; //csp, one bitmask per cell
+    private ConstraintIndex index; // built once per solve from the groups
+    private ArcConsistency arcConsistency;
+    private CagePropagator cagePropagator; // GAC over each group's valid tuples
+    private AllDifferentPropagator allDifferent; // null when rows/columns are pairwise
+    private SolverOptions options;
+    private PropagationLevel level = PropagationLevel.CAGE_FORWARD_CHECK;
+    private VariableSelector variableSelector;
+    private ValueOrderer valueOrderer;
+    private int[][] valueBuffers; // search depth -> values of the cell in trial order
+    private int lastConflict;     // constraint id behind the last wipe-out
+    private final SolverStats stats = new SolverStats(); // counters of the last solve
+    private int depthOffset; // search depth of a loaded snapshot's root
+    private AtomicBoolean cancelled; // set by a parallel or portfolio search to stop this one
+    private SolutionCount counting; // non-null while countSolutions() is running
+    private SearchLimits limits = NO_LIMITS; // bounds of the running solve
+    private SolveStatus stopReason;          // TIMEOUT or CANCELLED once a limit stopped the search
+    private AtomicLong sharedNodes;          // node budget shared by parallel workers, or null
+
+    private static final SearchLimits NO_LIMITS = new SearchLimits();
+
+    // Conflict-directed backjumping (SolverOptions.backjumping): decisions
+    // by level, conflict sets as level bitsets (see DomainStore) and the
+    // nogoods learned from exhausted levels
+    private boolean backjumping;
+    private int[] decisionCell;
+    private int[] decisionValue;
+    private int[] nogoodCells;  // scratch for learn(), NogoodStore.MAX_LENGTH each
+    private int[] nogoodValues;
+    private long[][] conflictBuffers; // search depth -> conflict set of that level
+    private long[] conflictOut;       // conflict set a failed subtree or assign() reports
+    private NogoodStore nogoods;
+
+    // Restarts (SolverOptions.restarts): the node count at which the
+    // current run gives up, whether it just did, and the values each cell
+    // has been refuted for at the root by the runs so far
+    private long restartAt = Long.MAX_VALUE;
+    private boolean restarting;
+    private int[] rootRefuted;
     
     public CSPPuzzleSolver(int N) {
         this.N = N;
         this.grid = new int[N][N];
         this.groups = new ArrayList<>();
-        this.domains = new HashMap<>();
+        this.givens = new int[N * N];
+        this.domains = new DomainStore(N);
+    }
+    
+    // Worker copy for parallel search: shares the immutable model of a
+    // prepared solver and owns its grid, domains and propagators
+    CSPPuzzleSolver(CSPPuzzleSolver root, AtomicBoolean cancelled, AtomicLong sharedNodes) {
+        this(root.N);
+        this.groups = root.groups;
+        this.givens = root.givens;
+        this.index = root.index;
+        this.options = root.options;
+        this.level = root.level;
+        this.cancelled = cancelled;
+        this.limits = root.limits;
+        this.sharedNodes = sharedNodes;
+        createPropagators();
     }
 
     public int getN() {
         return N;
     }
     
+    // Unsolved solver for the same puzzle, sharing the group list
+    CSPPuzzleSolver copy() {
+        CSPPuzzleSolver copy = new CSPPuzzleSolver(N);
+        copy.groups = groups;
+        copy.givens = givens;
+        return copy;
+    }
+    
+    // Flag checked once per search node; the search gives up once it is set
+    void setCancelled(AtomicBoolean cancelled) {
+        this.cancelled = cancelled;
+    }
+    
     public void addGroup(List<Cell> cells, char operator, int target) {
         groups.add(new Group(cells, operator, target));
     }
+
+    // Fixes a cell to a value before the search starts ('#r,c->v' lines)
+    public void addGiven(int row, int col, int value) {
+        if (row < 0 || row >= N || col < 0 || col >= N || value < 1 || value > N) {
+            throw new IllegalArgumentException("Given out of range: " + row + "," + col + "->" + value);
+        }
+        givens[row * N + col] = value;
+    }
+
+    // Given value of a cell, or 0 if it is not fixed
+    public int getGivenAt(int row, int col) {
+        return givens[row * N + col];
+    }
+
+    public List<Group> getGroups() {
+        return Collections.unmodifiableList(groups);
+    }
     
     private void initializeDomains() {
-        // Initialize domains for all cells with values 1 to N
-        for (int i = 0; i < N; i++) {
-            for (int j = 0; j < N; j++) {
-                Cell cell = new Cell(i, j);
-                Set<Integer> domain = new HashSet<>();
-                for (int k = 1; k <= N; k++) {
-                    domain.add(k);
-                }
-                domains.put(cell, domain);
-            }
+        // Initialize domains for all cells with values 1 to N and clear
+        // whatever a previous solve left in the grid
+        domains.fill();
+        for (int[] row : grid) {
+            Arrays.fill(row, 0);
         }
     }
     
-    private boolean isValid(Cell cell, int value) {
+    // True if value at cell breaks no row, column or group constraint given
+    // the rest of the grid; groups with empty cells are checked for bounds
+    boolean isValid(Cell cell, int value) {
         // Check row and column constraints
         for (int i = 0; i < N; i++) {
             //each row and column should have a unique value.
@@ -43,45 +130,46 @@ public class CSPPuzzleSolver {
             if (grid[i][cell.col] == value && i != cell.row) return false;
         }
         
-        // Check group constraints
-        for (Group group : groups) {
-            if (group.cells.contains(cell) && group.operator == '+') {
-                if (!checkAdditionConstraint(group, cell, value)) {
-                    return false;
-                }
-            }
-            else if (group.cells.contains(cell) && group.operator == '*') {
-                if (!checkMultiplicationConstraint(group, cell, value)) {
-                    return false;
-                }
-            }
-            // divide
-            else if (group.cells.contains(cell) && group.operator == '/') {
-                if (!checkDivisionConstraint(group, cell, value)) {
-                    return false;
-                }
-            }
-            // subtract
-            else if (group.cells.contains(cell) && group.operator == '-') {
-                if (!checkSubtractionConstraint(group, cell, value)) {
-                    return false;
-                }
+        // Check constraints of the groups this cell belongs to
+        int cellIndex = index.index(cell.row, cell.col);
+        for (int cage : index.cagesOf[cellIndex]) {
+            switch (index.cageOperator[cage]) {
+                case '+':
+                    if (!checkAdditionConstraint(cage, cellIndex, value)) return false;
+                    break;
+                case '*':
+                    if (!checkMultiplicationConstraint(cage, cellIndex, value)) return false;
+                    break;
+                // divide
+                case '/':
+                    if (!checkDivisionConstraint(cage, cellIndex, value)) return false;
+                    break;
+                // subtract
+                case '-':
+                    if (!checkSubtractionConstraint(cage, cellIndex, value)) return false;
+                    break;
+                default:
+                    break;
             }
         }
         
         return true;
     }
+
+    private int valueAt(int cellIndex) {
+        return grid[index.row(cellIndex)][index.col(cellIndex)];
+    }
     
-    private boolean checkAdditionConstraint(Group group, Cell currentCell, int value) {
+    private boolean checkAdditionConstraint(int cage, int currentCell, int value) {
         int sum = 0;
         boolean allFilled = true;
         
         // Calculate sum of filled cells
-        for (Cell cell : group.cells) {
-            if (cell.equals(currentCell)) {
+        for (int cell : index.cageCells[cage]) {
+            if (cell == currentCell) {
                 sum += value;
             } else {
-                int cellValue = grid[cell.row][cell.col];
+                int cellValue = valueAt(cell);
                 if (cellValue == 0) {
                     allFilled = false;
                 }
@@ -91,23 +179,23 @@ public class CSPPuzzleSolver {
         
         // If all cells are filled (including the current one), check if sum equals target
         if (allFilled) {
-            return sum == group.target;
+            return sum == index.cageTarget[cage];
         }
         
         // If not all cells are filled, check if current sum is less than target
-        return sum <= group.target;
+        return sum <= index.cageTarget[cage];
     }
 
-    private boolean checkMultiplicationConstraint(Group group, Cell currentCell, int value) {
+    private boolean checkMultiplicationConstraint(int cage, int currentCell, int value) {
         int product = 1;
         boolean allFilled = true;
         
         // Calculate product of filled cells
-        for (Cell cell : group.cells) {
-            if (cell.equals(currentCell)) {
+        for (int cell : index.cageCells[cage]) {
+            if (cell == currentCell) {
                 product *= value;
             } else {
-                int cellValue = grid[cell.row][cell.col];
+                int cellValue = valueAt(cell);
                 if (cellValue == 0) {
                     allFilled = false;
                 } else {
@@ -118,21 +206,22 @@ public class CSPPuzzleSolver {
         
         // If all cells are filled (including the current one), check if product equals target
         if (allFilled) {
-            return product == group.target;
+            return product == index.cageTarget[cage];
         }
         
         // If not all cells are filled, check if current product is a factor of target
-        return group.target % product == 0;
+        return index.cageTarget[cage] % product == 0;
     }
 
-    private boolean checkDivisionConstraint(Group group, Cell currentCell, int value) {
+    private boolean checkDivisionConstraint(int cage, int currentCell, int value) {
+        int[] cells = index.cageCells[cage];
         // Division groups should only have 2 cells
-        if (group.cells.size() != 2) {
+        if (cells.length != 2) {
             return false;
         }
 
-        Cell otherCell = group.cells.get(0).equals(currentCell) ? group.cells.get(1) : group.cells.get(0);
-        int otherValue = grid[otherCell.row][otherCell.col];
+        int otherCell = cells[0] == currentCell ? cells[1] : cells[0];
+        int otherValue = valueAt(otherCell);
 
         // If other cell is not filled yet
         if (otherValue == 0) {
@@ -145,262 +234,843 @@ public class CSPPuzzleSolver {
 
         // Check if larger divided by smaller equals target
         // Also ensure no division by zero
-        return smaller != 0 && larger / smaller == group.target && larger % smaller == 0;
+        return smaller != 0 && larger / smaller == index.cageTarget[cage] && larger % smaller == 0;
     }
 
-    private boolean checkSubtractionConstraint(Group group, Cell currentCell, int value) {
+    private boolean checkSubtractionConstraint(int cage, int currentCell, int value) {
+        int[] cells = index.cageCells[cage];
         // Subtraction groups should only have 2 cells
-        if (group.cells.size() != 2) {
+        if (cells.length != 2) {
             return false;
         }
 
-        Cell otherCell = group.cells.get(0).equals(currentCell) ? group.cells.get(1) : group.cells.get(0);
-        int otherValue = grid[otherCell.row][otherCell.col];
+        int otherCell = cells[0] == currentCell ? cells[1] : cells[0];
+        int otherValue = valueAt(otherCell);
 
         // If other cell is not filled yet
         if (otherValue == 0) {
             return true; // Allow this value for now
         }
 
-        // Try both orderings since we want the absolute difference
         // The target should be the absolute difference between the two numbers
-        int diff1 = Math.abs(value - otherValue);
-        int diff2 = Math.abs(otherValue - value);
-
-        // Check if either difference equals the target
-        return diff1 == group.target || diff2 == group.target;
+        return Math.abs(value - otherValue) == index.cageTarget[cage];
     }
     
-    private Cell selectUnassignedVariable() {
-        // Implementation of MRV (Minimum Remaining Values) heuristic
-        Cell selectedCell = null;
-        int minDomainSize = Integer.MAX_VALUE;
+    // Checked once per node: the node budget, the shared cancel flag and the
+    // token every time, the clock, the interrupt flag and the progress
+    // report every CHECK_INTERVAL nodes. Records why the search stopped; a
+    // search called off through the shared flag ends CANCELLED, not UNSAT.
+    private boolean shouldStop() {
+        if (stopReason != null) return true;
+        if (cancelled != null && cancelled.get()) return stop(SolveStatus.CANCELLED);
+        long nodes = stats.nodes;
+        // Nodes 1, 1 + CHECK_INTERVAL, ..., so even a short search looks once
+        boolean interval = (nodes & (SearchLimits.CHECK_INTERVAL - 1)) == 1;
+        // Parallel workers charge the shared budget a whole interval at a time
+        if (nodes > limits.maxNodes || (sharedNodes != null && interval
+                && sharedNodes.addAndGet(nodes == 1 ? 1 : SearchLimits.CHECK_INTERVAL) > limits.maxNodes)) {
+            return stop(SolveStatus.TIMEOUT);
+        }
+        if (limits.token != null && limits.token.isCancelled()) {
+            return stop(SolveStatus.CANCELLED);
+        }
+        if (interval) {
+            if (limits.progress != null) report(limits.progress, nodes);
+            if (limits.hasDeadline && System.nanoTime() - limits.deadline >= 0) {
+                return stop(SolveStatus.TIMEOUT);
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return stop(SolveStatus.CANCELLED);
+            }
+        }
+        if (nodes > restartAt) {
+            restarting = true;
+            return true;
+        }
+        return false;
+    }
+
+    // The limits that apply before the first node: the cancel flag, the
+    // token, the clock and the interrupt flag, polled while the tables are
+    // built and between root propagation steps. Records why it stopped.
+    private boolean setupShouldStop() {
+        if (stopReason != null) return true;
+        if (cancelled != null && cancelled.get()) return stop(SolveStatus.CANCELLED);
+        if (limits.token != null && limits.token.isCancelled()) {
+            return stop(SolveStatus.CANCELLED);
+        }
+        if (limits.hasDeadline && System.nanoTime() - limits.deadline >= 0) {
+            return stop(SolveStatus.TIMEOUT);
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            return stop(SolveStatus.CANCELLED);
+        }
+        return false;
+    }
+
+    private void report(SolveProgress progress, long nodes) {
+        progress.report(nodes == 1 ? 1 : SearchLimits.CHECK_INTERVAL, domains.depth() + depthOffset);
+        if (progress.wantsSnapshot()) {
+            progress.offerSnapshot(gridValues());
+        }
+    }
+
+    private boolean stop(SolveStatus reason) {
+        stopReason = reason;
+        return true;
+    }
+
+    // TIMEOUT or CANCELLED if a limit cut the last search short, else null
+    SolveStatus getStopReason() {
+        return stopReason;
+    }
+
+    void setStopReason(SolveStatus reason) {
+        this.stopReason = reason;
+    }
+
+    private boolean solve() {
+        if (stopReason != null || restarting) return false; // unwinding, not a new node
+        stats.nodes++;
+        if (shouldStop()) return false;
+        int depth = domains.depth() + depthOffset;
+        if (depth > stats.maxDepth) stats.maxDepth = depth;
+        int cellIndex = variableSelector.select();
+        if (cellIndex < 0) {
+            // All variables are assigned; when counting, keep going until the limit
+            return counting == null || counting.record(copyGrid());
+        }
         
-        for (int i = 0; i < N; i++) {
-            for (int j = 0; j < N; j++) {
-                if (grid[i][j] == 0) {  // unassigned cell
-                    Cell cell = new Cell(i, j);
-                    int domainSize = domains.get(cell).size();
-                    if (domainSize < minDomainSize) {
-                        minDomainSize = domainSize;
-                        selectedCell = cell;
-                    }
+        // One value buffer per search depth, so ordering allocates nothing
+        int[] values = valueBuffers[domains.depth()];
+        int count = orderValues(cellIndex, values);
+        variableSelector.assigned(cellIndex);
+        for (int k = 0; k < count; k++) {
+            if (assign(cellIndex, values[k])) {
+                if (solve()) {
+                    return true;
                 }
+                // Backtrack
+                unassign(cellIndex);
+                if (stopReason != null || restarting) break;
             }
+            if (rootRefuted != null && domains.depth() == 0) refuteAtRoot(cellIndex, values[k]);
+            stats.backtracks++;
         }
+        variableSelector.unassigned(cellIndex);
         
-        return selectedCell;
+        return false;
     }
     
-    private boolean solve() {
-        Cell cell = selectUnassignedVariable(); //mrv 
-        if (cell == null) return true;  // All variables are assigned
+    // Conflict-directed backjumping over the same propagation as solve().
+    // A failed subtree reports in conflictOut the levels its failure
+    // depends on; a level missing from that set is left at once, without
+    // trying its other values. A level whose values all fail reports the
+    // union of their conflict sets, less itself, and the decisions of those
+    // levels are learned as a nogood that prunes later branches.
+    private boolean backjump() {
+        if (stopReason != null || restarting) return false;
+        stats.nodes++;
+        if (shouldStop()) return false;
+        int depth = domains.depth() + depthOffset;
+        if (depth > stats.maxDepth) stats.maxDepth = depth;
+        int cellIndex = variableSelector.select();
+        if (cellIndex < 0) return true;
         
-        for (int value : domains.get(cell)) {
-            if (isValid(cell, value)) {
-                grid[cell.row][cell.col] = value;
-                
-                // Forward checking
-                Map<Cell, Set<Integer>> savedDomains = new HashMap<>();
-                if (forwardCheck(cell, value, savedDomains)) {
-                    if (solve()) {
-                        return true;
-                    }
+        int level = domains.depth() + 1; // the level assign() opens
+        int[] values = valueBuffers[domains.depth()];
+        long[] conflict = conflictBuffers[domains.depth()];
+        // Values pruned earlier are not tried, so their causes count too
+        Arrays.fill(conflict, 0);
+        domains.explainInto(cellIndex, conflict);
+        int count = orderValues(cellIndex, values);
+        variableSelector.assigned(cellIndex);
+        for (int k = 0; k < count; k++) {
+            if (nogoods.banned(cellIndex, values[k])) {
+                stats.nogoodPrunings++;
+                stats.backtracks++;
+                continue;
+            }
+            if (assign(cellIndex, values[k])) {
+                if (backjump()) {
+                    return true;
                 }
-                
-                // Backtrack
-                grid[cell.row][cell.col] = 0;
-                restoreDomains(savedDomains);
+                unassign(cellIndex);
+                if (stopReason != null || restarting || (cancelled != null && cancelled.get())) {
+                    // Cut short, so nothing was proven
+                    variableSelector.unassigned(cellIndex);
+                    return false;
+                }
+                if ((conflictOut[level >>> 6] & (1L << level)) == 0) {
+                    // This level's decision played no part: jump over it
+                    stats.backjumps++;
+                    variableSelector.unassigned(cellIndex);
+                    return false;
+                }
+            }
+            for (int w = 0; w < conflict.length; w++) {
+                conflict[w] |= conflictOut[w];
+            }
+            conflict[level >>> 6] &= ~(1L << level);
+            if (rootRefuted != null && domains.depth() == 0) refuteAtRoot(cellIndex, values[k]);
+            stats.backtracks++;
+        }
+        variableSelector.unassigned(cellIndex);
+        learn(conflict);
+        System.arraycopy(conflict, 0, conflictOut, 0, conflict.length);
+        return false;
+    }
+    
+    // Records the decisions of a conflict set as a nogood
+    private void learn(long[] conflict) {
+        int length = 0;
+        for (long word : conflict) {
+            length += Long.bitCount(word);
+        }
+        if (length > NogoodStore.MAX_LENGTH) return;
+        int k = 0;
+        for (int w = 0; w < conflict.length; w++) {
+            for (long m = conflict[w]; m != 0; m &= m - 1) {
+                int level = (w << 6) + Long.numberOfTrailingZeros(m);
+                nogoodCells[k] = decisionCell[level];
+                nogoodValues[k++] = decisionValue[level];
+            }
+        }
+        // A decision that fails on its own is refuted for good
+        if (length == 1 && rootRefuted != null) refuteAtRoot(nogoodCells[0], nogoodValues[0]);
+        if (nogoods.learn(nogoodCells, nogoodValues, length)) stats.nogoodsLearned++;
+    }
+    
+    private void refuteAtRoot(int cellIndex, int value) {
+        rootRefuted[cellIndex] |= DomainStore.bit(value);
+    }
+    
+    // Encodes the root-propagated model as CNF and hands it to the CDCL
+    // solver; a model is read back into the grid
+    private boolean satSearch() {
+        PuzzleCnf cnf = new PuzzleCnf(index, domains);
+        CdclSolver sat = new CdclSolver(cnf.variableCount(), stats);
+        for (int[] clause : cnf.clauses()) {
+            if (!sat.addClause(clause)) break;
+        }
+        // Encoding a large model takes a while too
+        if (setupShouldStop()) return false;
+        SolveStatus status = sat.solve(limits, cancelled);
+        if (status == SolveStatus.TIMEOUT || status == SolveStatus.CANCELLED) {
+            stopReason = status;
+        }
+        if (status != SolveStatus.SOLVED) return false;
+        for (int c = 0; c < N * N; c++) {
+            for (int v = 1; v <= N; v++) {
+                if (sat.modelValue(cnf.variable(c, v))) grid[c / N][c % N] = v;
+            }
+        }
+        return true;
+    }
+    
+    // Writes the CNF the SAT engine would solve for these options, in
+    // DIMACS format, for comparison with offline SAT solvers
+    public void exportDimacs(Writer out) throws IOException {
+        exportDimacs(out, new SolverOptions());
+    }
+
+    public void exportDimacs(Writer out, SolverOptions options) throws IOException {
+        cnf(options).writeDimacs(out);
+    }
+
+    // The encoding exportDimacs() writes
+    PuzzleCnf cnf(SolverOptions options) {
+        return prepare(options) ? new PuzzleCnf(index, domains) : PuzzleCnf.unsatisfiable(N);
+    }
+    
+    // Runs the search under the restart schedule. A run that uses up its
+    // budget unwinds to the root; the values it refuted there are removed
+    // for good before the next run, while the selector's conflict weights
+    // and the nogood store simply carry on. A run that ends within its
+    // budget is final, so an exhausted run still proves there is no
+    // solution.
+    private boolean restartSearch() {
+        rootRefuted = new int[N * N];
+        try {
+            for (int run = 0; ; run++) {
+                long budget = options.restarts.budget(run);
+                restartAt = Long.MAX_VALUE - stats.nodes > budget ? stats.nodes + budget : Long.MAX_VALUE;
+                if (search()) return true;
+                if (!restarting) return false;
+                restarting = false;
+                stats.restarts++;
+                if (!pruneRoot()) return false;
+            }
+        } finally {
+            restartAt = Long.MAX_VALUE;
+            restarting = false;
+            rootRefuted = null;
+        }
+    }
+    
+    // Removes the refuted values at the root level, where nothing is ever
+    // undone, and propagates; false if that leaves no solution
+    private boolean pruneRoot() {
+        for (int c = 0; c < rootRefuted.length; c++) {
+            int mask = domains.mask(c);
+            if ((mask & rootRefuted[c]) == 0) continue;
+            stats.rootPrunings += Integer.bitCount(mask & rootRefuted[c]);
+            domains.setMask(c, mask & ~rootRefuted[c]);
+            if (domains.isEmpty(c)) {
+                domains.clearDirty();
+                return false;
             }
         }
+        return propagate(PropagationLevel.MAC);
+    }
+    
+    int selectVariable() {
+        return variableSelector.select();
+    }
+    
+    int orderValues(int cellIndex, int[] out) {
+        return valueOrderer.order(cellIndex, domains.mask(cellIndex), out);
+    }
+    
+    void markAssigned(int cellIndex) {
+        variableSelector.assigned(cellIndex);
+    }
+    
+    void markUnassigned(int cellIndex) {
+        variableSelector.unassigned(cellIndex);
+    }
+    
+    // Places a value and propagates it on a new trail level. Returns false,
+    // with everything undone, when the value is invalid or propagation fails;
+    // when backjumping, conflictOut then holds the levels behind the failure.
+    boolean assign(int cellIndex, int value) {
+        Cell cell = index.cells[cellIndex];
+        if (!isValid(cell, value)) {
+            if (backjumping) explainConflict(index.peers[cellIndex]);
+            return false;
+        }
+        grid[cell.row][cell.col] = value;
         
+        // Forward checking and further propagation, recorded on a new trail level
+        domains.pushLevel();
+        domains.setMask(cellIndex, DomainStore.bit(value));
+        if (backjumping) {
+            int depth = domains.depth();
+            decisionCell[depth] = cellIndex;
+            decisionValue[depth] = value;
+            domains.explainLevel(cellIndex, depth);
+            domains.clearEmptied();
+        }
+        if (forwardCheck(cell, value) && nogoodsHold(cellIndex, value) && propagate(level)) {
+            return true;
+        }
+        variableSelector.conflict(lastConflict);
+        if (backjumping) explainFailure();
+        unassign(cellIndex);
         return false;
     }
     
-    private boolean forwardCheck(Cell cell, int value, Map<Cell, Set<Integer>> savedDomains) {
-        // Save and update domains of related cells (same row, column, and group)
+    // Lets the learned nogoods react to a decision
+    private boolean nogoodsHold(int cellIndex, int value) {
+        if (nogoods == null || nogoods.decided(cellIndex, value)) return true;
+        lastConflict = -1; // the emptied cell explains it
+        return false;
+    }
+    
+    // The wipe-out depends on what the emptied cell depends on; a failure
+    // without one, such as a Hall violation, on all cells of its constraint
+    private void explainFailure() {
+        int emptied = domains.emptied();
+        if (emptied >= 0) {
+            Arrays.fill(conflictOut, 0);
+            domains.explainInto(emptied, conflictOut);
+        } else if (lastConflict >= 0) {
+            explainConflict(index.scope[lastConflict]);
+        } else {
+            // Unknown cause: blame every open level, as plain backtracking would
+            Arrays.fill(conflictOut, 0);
+            for (int l = 1; l <= domains.depth(); l++) {
+                conflictOut[l >>> 6] |= 1L << l;
+            }
+        }
+    }
+    
+    private void explainConflict(int[] cells) {
+        Arrays.fill(conflictOut, 0);
+        for (int c : cells) {
+            domains.explainInto(c, conflictOut);
+        }
+    }
+    
+    void unassign(int cellIndex) {
+        Cell cell = index.cells[cellIndex];
+        grid[cell.row][cell.col] = 0;
+        restoreDomains();
+    }
+    
+    private boolean forwardCheck(Cell cell, int value) {
+        // Update domains of related cells (same row and column)
         for (int i = 0; i < N; i++) {
             // Check row
             if (i != cell.col && grid[cell.row][i] == 0) {
-                Cell neighbor = new Cell(cell.row, i);
-                updateDomain(neighbor, value, savedDomains);
-                if (domains.get(neighbor).isEmpty()) return false;
+                int neighbor = domains.index(cell.row, i);
+                if (!updateDomain(neighbor, value)) {
+                    lastConflict = index.rowConstraint(cell.row);
+                    return false;
+                }
             }
             // Check column
             if (i != cell.row && grid[i][cell.col] == 0) {
-                Cell neighbor = new Cell(i, cell.col);
-                updateDomain(neighbor, value, savedDomains);
-                if (domains.get(neighbor).isEmpty()) return false;
+                int neighbor = domains.index(i, cell.col);
+                if (!updateDomain(neighbor, value)) {
+                    lastConflict = index.colConstraint(cell.col);
+                    return false;
+                }
             }
         }
         return true;
     }
     
-    private void updateDomain(Cell cell, int value, Map<Cell, Set<Integer>> savedDomains) {
-        Set<Integer> domain = domains.get(cell);
-        if (!savedDomains.containsKey(cell)) {
-            savedDomains.put(cell, new HashSet<>(domain));
+    // Returns false once the cell has no values left
+    private boolean updateDomain(int cellIndex, int value) {
+        if (domains.remove(cellIndex, value)) {
+            stats.forwardCheckPrunings++;
+            // Only the decision just made removes the value
+            domains.explainLevel(cellIndex, domains.depth());
         }
-        domain.remove(value);
+        if (domains.isEmpty(cellIndex)) {
+            domains.clearDirty();
+            return false;
+        }
+        return true;
     }
     
-    //restore domain
-    private void restoreDomains(Map<Cell, Set<Integer>> savedDomains) {
-        for (Map.Entry<Cell, Set<Integer>> entry : savedDomains.entrySet()) {
-            domains.put(entry.getKey(), entry.getValue());
+    // Hands every narrowed cell to the propagators the level asks for and
+    // runs them until no domain changes. Global AllDifferent filtering, when
+    // enabled, runs at every level.
+    private boolean propagate(PropagationLevel level) {
+        boolean cages = level != PropagationLevel.FORWARD_CHECK;
+        boolean mac = level == PropagationLevel.MAC;
+        if (!cages && allDifferent == null) {
+            domains.clearDirty();
+            return true;
+        }
+        while (domains.hasDirty()) {
+            // Root propagation runs before any node checks the limits
+            if (domains.depth() == 0 && setupShouldStop()) {
+                clearPropagation();
+                return false;
+            }
+            while (domains.hasDirty()) {
+                int cell = domains.pollDirty();
+                if (cages) cagePropagator.cellChanged(cell);
+                if (mac) arcConsistency.cellChanged(cell);
+                if (allDifferent != null) allDifferent.cellChanged(cell);
+            }
+            boolean consistent = true;
+            if (mac && !timedArcConsistency()) {
+                lastConflict = arcConsistency.lastConflict;
+                consistent = false;
+            } else if (allDifferent != null && !allDifferent.propagate()) {
+                lastConflict = allDifferent.lastConflict;
+                consistent = false;
+            } else if (cages && !cagePropagator.propagate()) {
+                lastConflict = cagePropagator.lastConflict;
+                consistent = false;
+            }
+            if (!consistent) {
+                clearPropagation();
+                return false;
+            }
         }
+        return true;
+    }
+
+    private void clearPropagation() {
+        arcConsistency.clearQueue();
+        cagePropagator.clear();
+        if (allDifferent != null) allDifferent.clear();
+        domains.clearDirty();
+    }
+    
+    //restore domains changed since the last pushLevel()
+    private void restoreDomains() {
+        domains.popLevel();
     }
     
     private boolean ac3() {
-        Queue<Arc> queue = new LinkedList<>();
-        
-        // Add all arcs to queue
-        // Row and column arcs
-        for (int i = 0; i < N; i++) {
-            for (int j = 0; j < N; j++) {
-                Cell cell1 = new Cell(i, j);
-                // Row arcs
-                for (int k = 0; k < N; k++) {
-                    if (k != j) {
-                        queue.add(new Arc(cell1, new Cell(i, k)));
-                    }
-                }
-                // Column arcs
-                for (int k = 0; k < N; k++) {
-                    if (k != i) {
-                        queue.add(new Arc(cell1, new Cell(k, j)));
-                    }
+        long start = System.nanoTime();
+        boolean consistent = arcConsistency.enforceAll();
+        stats.arcNanos += System.nanoTime() - start;
+        return consistent;
+    }
+    
+    private boolean timedArcConsistency() {
+        long start = System.nanoTime();
+        boolean consistent = arcConsistency.propagate();
+        stats.arcNanos += System.nanoTime() - start;
+        return consistent;
+    }
+    
+    public boolean solvePuzzle() {
+        return solvePuzzle(PropagationLevel.CAGE_FORWARD_CHECK);
+    }
+    
+    public boolean solvePuzzle(PropagationLevel level) {
+        return solvePuzzle(new SolverOptions().propagationLevel(level));
+    }
+    
+    public boolean solvePuzzle(SolverOptions options) {
+        return solvePuzzle(options, NO_LIMITS) == SolveStatus.SOLVED;
+    }
+    
+    // Solves within the given limits. TIMEOUT and CANCELLED leave the grid
+    // unsolved; the stats still describe the partial search.
+    public SolveStatus solvePuzzle(SolverOptions options, SearchLimits limits) {
+        SolveEvent event = new SolveEvent();
+        event.begin();
+        stats.reset();
+        begin(limits);
+        boolean solved = false;
+        try {
+            if (prepare(options)) {
+                long start = System.nanoTime();
+                if (options.engine == SolverEngine.SAT) {
+                    solved = satSearch();
+                } else if (options.parallelism > 1) {
+                    solved = new ParallelSearch(this, options.parallelism).run();
+                } else {
+                    solved = options.restarts != null ? restartSearch() : search();
                 }
+                stats.searchNanos = System.nanoTime() - start;
             }
+        } finally {
+            this.limits = NO_LIMITS;
         }
-        
-        // Group arcs
-        for (Group group : groups) {
-            for (Cell cell1 : group.cells) {
-                for (Cell cell2 : group.cells) {
-                    if (!cell1.equals(cell2)) {
-                        queue.add(new Arc(cell1, cell2));
-                    }
-                }
+        SolveStatus status = solved ? SolveStatus.SOLVED : stopReason != null ? stopReason : SolveStatus.UNSAT;
+        commit(event, options, status);
+        return status;
+    }
+    
+    private void begin(SearchLimits limits) {
+        this.limits = limits;
+        this.stopReason = null;
+    }
+    
+    // Counters and timings of the last solvePuzzle() or countSolutions()
+    public SolverStats getStats() {
+        return stats.copy();
+    }
+    
+    private void commit(SolveEvent event, SolverOptions options, SolveStatus status) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.gridSize = N;
+            event.configuration = options.toString();
+            event.solved = status == SolveStatus.SOLVED;
+            event.status = status.name();
+            event.nodes = stats.nodes;
+            event.backtracks = stats.backtracks;
+            event.maxDepth = stats.maxDepth;
+            event.commit();
+        }
+    }
+    
+    // Searches past the first solution, stopping once limit solutions are
+    // found; limit 2 answers whether the puzzle is unique. Uses the same
+    // propagation as solvePuzzle() but always searches sequentially. The
+    // grid is left holding the first solution, if any.
+    public SolutionCount countSolutions(int limit) {
+        return countSolutions(limit, new SolverOptions());
+    }
+
+    public SolutionCount countSolutions(int limit, SolverOptions options) {
+        return countSolutions(limit, options, NO_LIMITS);
+    }
+
+    // Counts within the given limits; a count cut short by them reports
+    // TIMEOUT or CANCELLED from getStatus() and is never unique
+    public SolutionCount countSolutions(int limit, SolverOptions options, SearchLimits limits) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Solution limit must be positive: " + limit);
+        }
+        SolveEvent event = new SolveEvent();
+        event.begin();
+        SolutionCount result = new SolutionCount(limit);
+        stats.reset();
+        begin(limits);
+        try {
+            if (prepare(options)) {
+                long start = System.nanoTime();
+                counting = result;
+                solve();
+                stats.searchNanos = System.nanoTime() - start;
             }
+        } finally {
+            counting = null;
+            this.limits = NO_LIMITS;
         }
-        
-        // Process all arcs
-        while (!queue.isEmpty()) {
-            Arc arc = queue.poll();
-            if (removeInconsistentValues(arc)) {
-                if (domains.get(arc.cell1).isEmpty()) {
-                    return false;
-                }
-                // Add all neighboring arcs
-                for (Cell neighbor : getNeighbors(arc.cell1)) {
-                    if (!neighbor.equals(arc.cell2)) {
-                        queue.add(new Arc(neighbor, arc.cell1));
-                    }
-                }
+        result.setNodes(stats.nodes);
+        result.setStopReason(stopReason);
+        commit(event, options, result.getStatus());
+        if (result.getCount() > 0) {
+            int[][] first = result.getSolutions().get(0);
+            for (int i = 0; i < N; i++) {
+                System.arraycopy(first[i], 0, grid[i], 0, N);
             }
         }
+        return result;
+    }
+
+    private int[][] copyGrid() {
+        int[][] copy = new int[N][];
+        for (int i = 0; i < N; i++) {
+            copy[i] = grid[i].clone();
+        }
+        return copy;
+    }
+
+    // Builds the model and propagators and runs root propagation
+    boolean prepare(SolverOptions options) {
+        this.options = options;
+        this.level = options.propagationLevel;
+        this.stopReason = null; // left over from an earlier solve otherwise
+        index = new ConstraintIndex(N, groups);
+        initializeDomains();
+        if (!applyGivens()) {
+            return false;
+        }
+        createPropagators();
+        depthOffset = 0;
+        // Run AC-3, row/column and group filtering to a fixpoint before
+        // starting the search; a limit may stop it between any two steps
+        if (setupShouldStop() || !rootPhase("AC-3", this::ac3) || setupShouldStop()
+                || !rootPhase("groups", cagePropagator::enforceAll) || setupShouldStop()
+                || (allDifferent != null && !rootPhase("AllDifferent", allDifferent::enforceAll))
+                || !rootPhase("fixpoint", () -> propagate(PropagationLevel.MAC))) {
+            return false;
+        }
+        createSearchStrategies();
+        markFixedCells();
         return true;
     }
-    
-    private boolean removeInconsistentValues(Arc arc) {
-        boolean removed = false;
-        Set<Integer> cell1Domain = domains.get(arc.cell1);
-        Set<Integer> cell2Domain = domains.get(arc.cell2);
-        
-        Set<Integer> valuesToRemove = new HashSet<>();
-        for (int x : cell1Domain) {
-            boolean foundConsistentY = false;
-            for (int y : cell2Domain) {
-                if (isConsistent(arc.cell1, x, arc.cell2, y)) {
-                    foundConsistentY = true;
-                    break;
-                }
-            }
-            if (!foundConsistentY) {
-                valuesToRemove.add(x);
-                removed = true;
-            }
+
+    // Runs one root propagation step, as a JFR event when a recording wants it
+    private boolean rootPhase(String phase, BooleanSupplier step) {
+        PropagationEvent event = new PropagationEvent();
+        if (!event.isEnabled()) {
+            return step.getAsBoolean();
         }
-        
-        cell1Domain.removeAll(valuesToRemove);
-        return removed;
+        int before = totalDomainSize();
+        event.begin();
+        boolean consistent = step.getAsBoolean();
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = phase;
+            event.consistent = consistent;
+            event.valuesRemoved = before - totalDomainSize();
+            event.commit();
+        }
+        return consistent;
     }
-    
-    private boolean isConsistent(Cell cell1, int value1, Cell cell2, int value2) {
-        // Check row/column constraints
-        if (cell1.row == cell2.row || cell1.col == cell2.col) {
-            return value1 != value2;
+
+    private int totalDomainSize() {
+        int total = 0;
+        for (int c = 0; c < N * N; c++) {
+            total += domains.size(c);
         }
-        
-        // Check group constraints
-        for (Group group : groups) {
-            if (group.cells.contains(cell1) && group.cells.contains(cell2)) {
-                return checkGroupConsistency(group, cell1, value1, cell2, value2);
+        return total;
+    }
+
+    // Places the givens and removes their values from row and column peers.
+    // This runs at the root level, so the changes are never undone.
+    private boolean applyGivens() {
+        for (int c = 0; c < givens.length; c++) {
+            int value = givens[c];
+            if (value == 0) continue;
+            int row = c / N, col = c % N;
+            if (!domains.contains(c, value)) return false;
+            grid[row][col] = value;
+            domains.setMask(c, DomainStore.bit(value));
+            for (int k = 0; k < N; k++) {
+                int rowPeer = row * N + k;
+                int colPeer = k * N + col;
+                if (rowPeer != c) domains.remove(rowPeer, value);
+                if (colPeer != c) domains.remove(colPeer, value);
             }
         }
-        
         return true;
     }
+
+    // Keeps cells that already hold a value out of variable selection
+    private void markFixedCells() {
+        for (int c = 0; c < N * N; c++) {
+            if (grid[c / N][c % N] != 0) variableSelector.assigned(c);
+        }
+    }
     
-    private boolean checkGroupConsistency(Group group, Cell cell1, int value1, Cell cell2, int value2) {
-        switch (group.operator) {
-            case '+':
-                return true; // Addition is always consistent between two values
-            case '*':
-                return true; // Multiplication is always consistent between two values
-            case '-':
-                return group.cells.size() == 2 && 
-                       (Math.abs(value1 - value2) == group.target || 
-                        Math.abs(value2 - value1) == group.target);
-            case '/':
-                if (group.cells.size() != 2) return false;
-                int larger = Math.max(value1, value2);
-                int smaller = Math.min(value1, value2);
-                return smaller != 0 && larger / smaller == group.target && larger % smaller == 0;
-            default:
-                return true;
+    private void createPropagators() {
+        backjumping = options.backjumping;
+        if (backjumping) {
+            domains.enableExplanations();
+            decisionCell = new int[N * N + 1];
+            decisionValue = new int[N * N + 1];
+            nogoods = new NogoodStore(N, domains, options.nogoodLimit, stats);
+            nogoodCells = new int[NogoodStore.MAX_LENGTH];
+            nogoodValues = new int[NogoodStore.MAX_LENGTH];
         }
+        arcConsistency = new ArcConsistency(index, domains, stats);
+        cagePropagator = new CagePropagator(index, domains, this::setupShouldStop);
+        allDifferent = options.allDifferentMode == AllDifferentMode.PAIRWISE
+                ? null : new AllDifferentPropagator(N, domains, options.allDifferentMode);
     }
     
-    private List<Cell> getNeighbors(Cell cell) {
-        List<Cell> neighbors = new ArrayList<>();
-        
-        // Add row neighbors
-        for (int j = 0; j < N; j++) {
-            if (j != cell.col) {
-                neighbors.add(new Cell(cell.row, j));
+    private void createSearchStrategies() {
+        // Restarts only pay off if each run can take a different path
+        Random tieBreaker = options.restarts != null ? new Random(options.seed) : null;
+        // A selector from an earlier solve would keep updating its buckets
+        domains.setListener(null);
+        variableSelector = createVariableSelector(options, tieBreaker);
+        valueOrderer = createValueOrderer(options, tieBreaker);
+        valueBuffers = new int[N * N + 1][N];
+        if (backjumping) {
+            conflictBuffers = new long[N * N + 1][];
+            for (int d = 0; d < conflictBuffers.length; d++) {
+                conflictBuffers[d] = domains.newLevelSet();
             }
+            conflictOut = domains.newLevelSet();
         }
-        
-        // Add column neighbors
-        for (int i = 0; i < N; i++) {
-            if (i != cell.row) {
-                neighbors.add(new Cell(i, cell.col));
+    }
+    
+    // AC-3 alone from full domains over the prepared model, for the
+    // benchmarks that time each solve phase on its own
+    boolean arcConsistencyPass() {
+        domains.fill();
+        return ac3();
+    }
+    
+    // Current state as (domain masks, grid values by cell index)
+    int[][] snapshot() {
+        return new int[][] {domains.copyMasks(), gridValues()};
+    }
+    
+    private int[] gridValues() {
+        int[] values = new int[N * N];
+        for (int c = 0; c < values.length; c++) {
+            values[c] = grid[c / N][c % N];
+        }
+        return values;
+    }
+    
+    // Replaces the whole state with a snapshot; the result is the new root
+    void load(int[][] snapshot) {
+        domains.load(snapshot[0]);
+        for (int c = 0; c < snapshot[1].length; c++) {
+            grid[c / N][c % N] = snapshot[1][c];
+        }
+        createSearchStrategies();
+        markFixedCells();
+        // Depth counts search assignments, so givens do not add to it
+        depthOffset = 0;
+        for (int c = 0; c < snapshot[1].length; c++) {
+            if (snapshot[1][c] != 0 && givens[c] == 0) depthOffset++;
+        }
+        stats.reset();
+        stopReason = null;
+        // Nogoods learned under another snapshot's assumptions do not hold here
+        if (nogoods != null) nogoods.clear();
+    }
+    
+    // Search from the current state with the configured algorithm
+    boolean search() {
+        return backjumping && counting == null ? backjump() : solve();
+    }
+    
+    // Searches on from the current trail level and returns the completion
+    // it finds by cell index, or null (getStopReason() tells a limit from
+    // a dead end). Either way the state is restored to where it started.
+    int[] probe(SearchLimits limits) {
+        int[] before = gridValues();
+        int depth = domains.depth();
+        stats.reset();
+        begin(limits);
+        boolean found;
+        try {
+            found = search();
+        } finally {
+            this.limits = NO_LIMITS;
+        }
+        if (!found) {
+            // A failed search has already backtracked to the start
+            return null;
+        }
+        int[] solution = gridValues();
+        while (domains.depth() > depth) {
+            domains.popLevel();
+        }
+        for (int c = 0; c < solution.length; c++) {
+            if (before[c] == 0) {
+                grid[c / N][c % N] = 0;
+                variableSelector.unassigned(c);
             }
         }
-        
-        // Add group neighbors
-        for (Group group : groups) {
-            if (group.cells.contains(cell)) {
-                for (Cell groupCell : group.cells) {
-                    if (!groupCell.equals(cell)) {
-                        neighbors.add(groupCell);
-                    }
-                }
+        return solution;
+    }
+    
+    // Values still allowed for a cell, as a DomainStore mask
+    int candidates(int cellIndex) {
+        return domains.mask(cellIndex);
+    }
+    
+    // Installs the outcome of a search run elsewhere; values is null when
+    // no solution was found
+    void setSolution(int[] values) {
+        if (values != null) {
+            for (int c = 0; c < values.length; c++) {
+                grid[c / N][c % N] = values[c];
             }
         }
-        
-        return neighbors;
     }
     
-    public boolean solvePuzzle() {
-        initializeDomains();
-        // Run AC-3 before starting the search
-        if (!ac3()) {
-            return false;
+    // Adds the counters of parallel workers to this solve's
+    void addStats(SolverStats other) {
+        stats.add(other);
+    }
+    
+    // Takes over the counters of a solver that solved this puzzle instead
+    void setStats(SolverStats other) {
+        stats.reset();
+        stats.add(other);
+        stats.searchNanos = other.searchNanos;
+    }
+    
+    // tieBreaker, if set, breaks ties in the orderings at random
+    private VariableSelector createVariableSelector(SolverOptions options, Random tieBreaker) {
+        switch (options.variableHeuristic) {
+            case MRV_DEGREE:
+                return new MrvSelector(index, domains, true, tieBreaker);
+            case DOM_WDEG:
+                return new DomWdegSelector(index, domains, tieBreaker);
+            case MRV:
+            default:
+                return new MrvSelector(index, domains, false, tieBreaker);
+        }
+    }
+    
+    private ValueOrderer createValueOrderer(SolverOptions options, Random tieBreaker) {
+        switch (options.valueHeuristic) {
+            case LEAST_CONSTRAINING:
+                return new LeastConstrainingValueOrderer(index, domains, tieBreaker);
+            case RANDOM:
+                return new RandomValueOrderer(options.seed);
+            case ASCENDING:
+            default:
+                return new AscendingValueOrderer();
         }
-        return solve();
+    }
+    
+    public long getNodeCount() {
+        return stats.nodes;
     }
     
     public void printGrid() {
@@ -0,0 +1,418 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+// Generalized arc consistency for the groups. Every valid value tuple of a
+// group is enumerated once up front (members sharing a row or column must
+// differ), and filtering keeps only the values that appear in some tuple
+// still allowed by all member domains. A '+' or '*' group whose table would
+// pass MAX_TABLE_INTS is filtered through its partial sums instead (see
+// PartialSums), which ignores the row and column rule inside the group.
+public class CagePropagator {
+    // Largest table built for one group, in ints (4 MB)
+    static final int MAX_TABLE_INTS = 1 << 20;
+
+    private final ConstraintIndex index;
+    private final DomainStore domains;
+
+    // cage id -> tuples stored flat as value bits, arity entries per tuple;
+    // null for operators the solver does not constrain and for groups over
+    // the cap. The arrays come from CageTupleCache and are shared, so they
+    // are never written to.
+    private final int[][] tuples;
+    private final PartialSums[] sums; // cage id -> automaton of a group over the cap, else null
+    private final int[] supported;    // scratch, one mask per member
+
+    int lastConflict = -1; // constraint id of the last wipe-out
+
+    // Ring buffer of cage ids waiting to be filtered plus in-queue flags
+    private final int[] queue;
+    private final boolean[] queued;
+    private int head, size;
+
+    CagePropagator(ConstraintIndex index, DomainStore domains) {
+        this(index, domains, () -> false);
+    }
+
+    // stop is polled while tables are enumerated; once it answers true the
+    // remaining groups get no table, and the caller is expected to give up
+    CagePropagator(ConstraintIndex index, DomainStore domains, BooleanSupplier stop) {
+        this.index = index;
+        this.domains = domains;
+
+        int cageCount = index.cageCells.length;
+        tuples = new int[cageCount][];
+        sums = new PartialSums[cageCount];
+        int maxArity = 0;
+        for (int g = 0; g < cageCount; g++) {
+            tuples[g] = lookup(index, g, stop);
+            if (tuples[g] == null) sums[g] = PartialSums.of(index, g);
+            maxArity = Math.max(maxArity, index.cageCells[g].length);
+        }
+        supported = new int[maxArity];
+        queue = new int[Math.max(cageCount, 1)];
+        queued = new boolean[cageCount];
+    }
+
+    // Filters every group once; narrowed cells are reported through the
+    // domain store's dirty list
+    boolean enforceAll() {
+        for (int g = 0; g < tuples.length; g++) {
+            enqueue(g);
+        }
+        return propagate();
+    }
+
+    // Schedules the groups of a cell whose domain changed
+    void cellChanged(int cell) {
+        for (int g : index.cagesOf[cell]) {
+            enqueue(g);
+        }
+    }
+
+    boolean propagate() {
+        while (size > 0) {
+            int cage = poll();
+            if (!filter(cage)) {
+                lastConflict = index.cageConstraint(cage);
+                clear();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Drops pending work, e.g. when the caller already hit a wipe-out
+    void clear() {
+        while (size > 0) poll();
+    }
+
+    private boolean filter(int cage) {
+        int[] members = index.cageCells[cage];
+        int arity = members.length;
+        int[] table = tuples[cage];
+        if (table == null && sums[cage] == null) return true;
+
+        for (int j = 0; j < arity; j++) {
+            supported[j] = 0;
+        }
+        if (table == null) {
+            sums[cage].supports(members, domains, supported);
+        } else {
+            tableSupports(members, table);
+        }
+
+        for (int j = 0; j < arity; j++) {
+            int member = members[j];
+            int mask = domains.mask(member);
+            if ((mask & supported[j]) != mask) {
+                domains.setMask(member, mask & supported[j]);
+                domains.explainFrom(member, members);
+                if (domains.isEmpty(member)) return false;
+                // Other groups sharing this cell have to be filtered again
+                for (int g : index.cagesOf[member]) {
+                    if (g != cage) enqueue(g);
+                }
+            }
+        }
+        return true;
+    }
+
+    // Values of the tuples still allowed by all member domains
+    private void tableSupports(int[] members, int[] table) {
+        int arity = members.length;
+        for (int t = 0; t < table.length; t += arity) {
+            boolean live = true;
+            for (int j = 0; j < arity; j++) {
+                if ((domains.mask(members[j]) & table[t + j]) == 0) {
+                    live = false;
+                    break;
+                }
+            }
+            if (live) {
+                for (int j = 0; j < arity; j++) {
+                    supported[j] |= table[t + j];
+                }
+            }
+        }
+    }
+
+    // Valid tuples of a group, shared through the process-wide cache;
+    // null for operators that do not constrain the group and for groups
+    // whose table would pass MAX_TABLE_INTS
+    static int[] lookup(ConstraintIndex index, int cage) {
+        return lookup(index, cage, () -> false);
+    }
+
+    // Also null when stop answered true during the enumeration
+    static int[] lookup(ConstraintIndex index, int cage, BooleanSupplier stop) {
+        int[] members = index.cageCells[cage];
+        int arity = members.length;
+        char operator = index.cageOperator[cage];
+        if (operator != '+' && operator != '-' && operator != '*' && operator != '/') {
+            return null;
+        }
+        // Tuples that ignore the row and column rule bound the table from
+        // above, so hopeless groups are never enumerated at all
+        PartialSums sums = PartialSums.of(index, cage);
+        if (sums != null && sums.count(arity) > MAX_TABLE_INTS / arity) {
+            return null;
+        }
+
+        // conflicts[j]: earlier positions in the same row or column as j
+        int[] conflicts = new int[arity];
+        for (int j = 0; j < arity; j++) {
+            for (int k = 0; k < j; k++) {
+                if (index.sameLine(members[j], members[k])) {
+                    conflicts[j] |= 1 << k;
+                }
+            }
+        }
+        return CageTupleCache.shared().tuples(operator, index.cageTarget[cage], index.N, conflicts, stop);
+    }
+
+    // All assignments of 1..N to the group's members that satisfy its
+    // operator, as value bits, or null once they pass MAX_TABLE_INTS or stop
+    // answers true (polled every STOP_INTERVAL steps). conflicts[j] has bit
+    // k set when positions j and k (k < j) share a row or column and must
+    // differ.
+    static int[] enumerate(char operator, int target, int N, int[] conflicts, BooleanSupplier stop) {
+        int arity = conflicts.length;
+        // '-' and '/' are only defined for two cells
+        if ((operator == '-' || operator == '/') && arity != 2) {
+            return new int[0];
+        }
+
+        TupleBuilder builder = new TupleBuilder(N, operator, target, conflicts, stop);
+        builder.search(0, operator == '*' ? 1 : 0);
+        return builder.abandoned ? null : Arrays.copyOf(builder.out, builder.outSize);
+    }
+
+    private static final int STOP_INTERVAL = 4096; // a power of two
+
+    private static class TupleBuilder {
+        final int N;
+        final char operator;
+        final int target;
+        final int[] conflicts;
+        final BooleanSupplier stop;
+        final int[] values;
+        int[] out = new int[64];
+        int outSize;
+        long steps;
+        boolean abandoned; // past MAX_TABLE_INTS or told to stop; unwinds the search
+
+        TupleBuilder(int N, char operator, int target, int[] conflicts, BooleanSupplier stop) {
+            this.N = N;
+            this.operator = operator;
+            this.target = target;
+            this.conflicts = conflicts;
+            this.stop = stop;
+            this.values = new int[conflicts.length];
+        }
+
+        // acc is the running sum or product of the values placed so far
+        void search(int position, int acc) {
+            if ((++steps & (STOP_INTERVAL - 1)) == 0 && stop.getAsBoolean()) {
+                abandoned = true;
+                return;
+            }
+            int arity = values.length;
+            if (position == arity) {
+                if (accepts(acc)) emit();
+                return;
+            }
+            int remaining = arity - position - 1;
+            for (int v = 1; v <= N && !abandoned; v++) {
+                if (!distinct(position, v)) continue;
+                int next = acc;
+                if (operator == '+') {
+                    next = acc + v;
+                    // The other cells add at least 1 and at most N each
+                    if (next + remaining > target) break;
+                    if (next + remaining * N < target) continue;
+                } else if (operator == '*') {
+                    next = acc * v;
+                    if (target % next != 0) continue;
+                }
+                values[position] = v;
+                search(position + 1, next);
+            }
+        }
+
+        private boolean distinct(int position, int v) {
+            for (int m = conflicts[position]; m != 0; m &= m - 1) {
+                if (values[Integer.numberOfTrailingZeros(m)] == v) return false;
+            }
+            return true;
+        }
+
+        // Same rules as the check*Constraint methods of the solver
+        private boolean accepts(int acc) {
+            switch (operator) {
+                case '+':
+                case '*':
+                    return acc == target;
+                case '-':
+                    return Math.abs(values[0] - values[1]) == target;
+                case '/':
+                    int larger = Math.max(values[0], values[1]);
+                    int smaller = Math.min(values[0], values[1]);
+                    return larger / smaller == target && larger % smaller == 0;
+                default:
+                    return true;
+            }
+        }
+
+        private void emit() {
+            if (outSize + values.length > MAX_TABLE_INTS) {
+                abandoned = true;
+                return;
+            }
+            if (outSize + values.length > out.length) {
+                out = Arrays.copyOf(out, out.length * 2);
+            }
+            for (int v : values) {
+                out[outSize++] = DomainStore.bit(v);
+            }
+        }
+    }
+
+    // Running sum or product of a '+' or '*' group as an automaton: a state
+    // is a value the first k members can add or multiply up to (a sum up to
+    // the target, or a divisor of it) and step[s][v] the state after one
+    // more member holding v, -1 past the target. Paths from start to accept
+    // through the member domains are the group's tuples with the row and
+    // column rule left out, so filtering over them costs arity * states * N
+    // however many tuples there are.
+    static final class PartialSums {
+        final int start;
+        final int accept;    // -1 when no tuple reaches the target
+        final int[][] step;  // state -> value -> next state or -1
+        final boolean[][] reach; // member count -> states reachable from start
+        private final boolean[][] live; // member count -> reachable states that lead to accept
+
+        private PartialSums(int[] stateValues, int start, int accept, int arity, int N, char operator, int target) {
+            int states = stateValues.length;
+            this.start = start;
+            this.accept = accept;
+            step = new int[states][N + 1];
+            for (int s = 0; s < states; s++) {
+                for (int v = 1; v <= N; v++) {
+                    long next = operator == '+' ? (long) stateValues[s] + v : (long) stateValues[s] * v;
+                    int t = next > target ? -1 : Arrays.binarySearch(stateValues, (int) next);
+                    step[s][v] = Math.max(t, -1);
+                }
+            }
+            reach = new boolean[arity + 1][states];
+            live = new boolean[arity + 1][states];
+        }
+
+        // Automaton of a '+' or '*' group, null for other operators
+        static PartialSums of(ConstraintIndex index, int cage) {
+            char operator = index.cageOperator[cage];
+            int target = index.cageTarget[cage];
+            int arity = index.cageCells[cage].length;
+            int N = index.N;
+            if (operator == '+') {
+                // No sum past arity * N is reachable
+                int top = (int) Math.max(0, Math.min(target, (long) arity * N));
+                int[] sums = new int[top + 1];
+                for (int s = 0; s <= top; s++) sums[s] = s;
+                return new PartialSums(sums, 0, target == top ? target : -1, arity, N, operator, target);
+            }
+            if (operator == '*') {
+                List<Integer> divisors = new ArrayList<>();
+                for (int d = 1; target > 0 && (long) d * d <= target; d++) {
+                    if (target % d != 0) continue;
+                    divisors.add(d);
+                    if (d != target / d) divisors.add(target / d);
+                }
+                if (divisors.isEmpty()) divisors.add(1);
+                int[] products = new int[divisors.size()];
+                for (int k = 0; k < products.length; k++) products[k] = divisors.get(k);
+                Arrays.sort(products);
+                int accept = target > 0 ? Arrays.binarySearch(products, target) : -1;
+                return new PartialSums(products, 0, accept, arity, N, operator, target);
+            }
+            return null;
+        }
+
+        // Tuples with the row and column rule left out, saturating at
+        // Long.MAX_VALUE / 2
+        long count(int arity) {
+            if (accept < 0) return 0;
+            long[] ways = new long[step.length];
+            ways[start] = 1;
+            for (int k = 0; k < arity; k++) {
+                long[] next = new long[step.length];
+                for (int s = 0; s < step.length; s++) {
+                    if (ways[s] == 0) continue;
+                    for (int v = 1; v < step[s].length; v++) {
+                        int t = step[s][v];
+                        if (t >= 0) next[t] = Math.min(next[t] + ways[s], Long.MAX_VALUE / 2);
+                    }
+                }
+                ways = next;
+            }
+            return ways[accept];
+        }
+
+        // ORs into supported[j] the values of member j on some path from
+        // start to accept through the current domains; false if none is
+        // left. Leaves reach filled in for the CNF encoding.
+        boolean supports(int[] members, DomainStore domains, int[] supported) {
+            int arity = members.length;
+            for (int k = 0; k <= arity; k++) {
+                Arrays.fill(reach[k], false);
+                Arrays.fill(live[k], false);
+            }
+            reach[0][start] = true;
+            for (int k = 0; k < arity; k++) {
+                int mask = domains.mask(members[k]);
+                for (int s = 0; s < step.length; s++) {
+                    if (!reach[k][s]) continue;
+                    for (int m = mask; m != 0; m &= m - 1) {
+                        int t = step[s][DomainStore.lowestValue(m)];
+                        if (t >= 0) reach[k + 1][t] = true;
+                    }
+                }
+            }
+            if (accept < 0 || !reach[arity][accept]) return false;
+            live[arity][accept] = true;
+            for (int k = arity - 1; k >= 0; k--) {
+                int mask = domains.mask(members[k]);
+                for (int s = 0; s < step.length; s++) {
+                    if (!reach[k][s]) continue;
+                    for (int m = mask; m != 0; m &= m - 1) {
+                        int value = DomainStore.lowestValue(m);
+                        int t = step[s][value];
+                        if (t >= 0 && live[k + 1][t]) {
+                            live[k][s] = true;
+                            supported[k] |= DomainStore.bit(value);
+                        }
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    private void enqueue(int cage) {
+        if (queued[cage]) return;
+        queued[cage] = true;
+        int tail = head + size;
+        if (tail >= queue.length) tail -= queue.length;
+        queue[tail] = cage;
+        size++;
+    }
+
+    private int poll() {
+        int cage = queue[head];
+        if (++head == queue.length) head = 0;
+        size--;
+        queued[cage] = false;
+        return cage;
+    }
+}
@@ -0,0 +1,131 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+// Process-wide LRU cache of valid group tuples, so solvers working on
+// puzzles with the same (operator, target, shape, N) groups only enumerate
+// them once. Memory is bounded by the total number of ints held; the least
+// recently used entries are evicted first. Safe for concurrent solvers.
+public class CageTupleCache {
+    static final long DEFAULT_MAX_WEIGHT = 8L * 1024 * 1024; // ints, ~32 MB
+
+    private static final CageTupleCache SHARED = new CageTupleCache(DEFAULT_MAX_WEIGHT);
+
+    private final long maxWeight;
+    private final LinkedHashMap<Key, int[]> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long weight;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    CageTupleCache(long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    public static CageTupleCache shared() {
+        return SHARED;
+    }
+
+    // Tuples for the layout described by conflicts (see CagePropagator.enumerate),
+    // or null for a table over CagePropagator.MAX_TABLE_INTS or one whose
+    // enumeration stop cut short; neither is kept. The returned array is
+    // shared and must not be modified.
+    int[] tuples(char operator, int target, int N, int[] conflicts, BooleanSupplier stop) {
+        Key key = new Key(operator, target, N, conflicts);
+        synchronized (this) {
+            int[] cached = entries.get(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+        misses.incrementAndGet();
+
+        // Enumerate outside the lock; a concurrent miss on the same key
+        // just computes the same table twice
+        int[] computed = CagePropagator.enumerate(operator, target, N, conflicts, stop);
+        if (computed == null) {
+            return null;
+        }
+        synchronized (this) {
+            int[] previous = entries.putIfAbsent(key, computed);
+            if (previous != null) {
+                return previous;
+            }
+            weight += computed.length + 1;
+            evict();
+        }
+        return computed;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Key, int[]>> it = entries.entrySet().iterator();
+        // Always keep the entry that was just added
+        while (weight > maxWeight && entries.size() > 1) {
+            Map.Entry<Key, int[]> eldest = it.next();
+            weight -= eldest.getValue().length + 1;
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+
+    public long evictions() {
+        return evictions.get();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long weight() {
+        return weight;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    private static final class Key {
+        final char operator;
+        final int target;
+        final int N;
+        final int[] conflicts; // row/column layout of the members
+        final int hash;
+
+        Key(char operator, int target, int N, int[] conflicts) {
+            this.operator = operator;
+            this.target = target;
+            this.N = N;
+            this.conflicts = conflicts;
+            this.hash = Objects.hash(operator, target, N) * 31 + Arrays.hashCode(conflicts);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return operator == key.operator && target == key.target && N == key.N
+                    && Arrays.equals(conflicts, key.conflicts);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
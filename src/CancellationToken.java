@@ -0,0 +1,13 @@
+// Lets another thread stop a running solve. The solver polls the token
+// once per search node and returns SolveStatus.CANCELLED.
+public class CancellationToken {
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
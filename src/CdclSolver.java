@@ -0,0 +1,468 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Conflict-driven clause learning SAT solver in the MiniSat mould: two
+// watched literals per clause, VSIDS activities in a binary heap with
+// saved phases, first-UIP learning with non-chronological backjumping,
+// Luby restarts, and a learned clause database that drops its less active
+// half whenever it outgrows its limit. Variables are numbered from 1 as in
+// DIMACS; inside, literal 2v is v and 2v + 1 its negation.
+//
+// Decisions count as search nodes and conflicts as backtracks, so the
+// node budget and the other SearchLimits apply as they do to the CSP
+// search.
+public class CdclSolver {
+    private static final double VAR_DECAY = 0.95;
+    private static final double CLAUSE_DECAY = 0.999;
+    private static final RestartSchedule RESTARTS = RestartSchedule.luby(100); // in conflicts
+
+    private static class Clause {
+        final int[] literals; // literals[0] is the implied one when this is a reason
+        final boolean learnt;
+        double activity;
+        boolean deleted;
+
+        Clause(int[] literals, boolean learnt) {
+            this.literals = literals;
+            this.learnt = learnt;
+        }
+    }
+
+    private final int variables;
+    private final SolverStats stats;
+    private boolean unsat; // an empty clause was added or derived at level 0
+    private int clauseCount;
+
+    // Assignment: literal -> 1 true, -1 false, 0 unassigned
+    private final byte[] value;
+    private final int[] level;      // variable -> decision level
+    private final Clause[] reason;  // variable -> implying clause, null for decisions
+    private final int[] trail;
+    private int trailSize;
+    private int propagated;         // trail entries already propagated
+    private int[] levelStart = new int[64]; // decision level - 1 -> its first trail entry
+    private int decisionLevel;
+
+    // literal -> clauses watching it, visited when it becomes false
+    private final Clause[][] watches;
+    private final int[] watchCount;
+
+    // VSIDS: max-heap of the variables by activity
+    private final double[] activity;
+    private double variableIncrement = 1;
+    private final int[] heap;
+    private final int[] heapIndex;  // variable -> heap position, or -1
+    private int heapSize;
+    private final boolean[] phase;  // variable -> last value it held
+
+    private final List<Clause> learnts = new ArrayList<>();
+    private double clauseIncrement = 1;
+    private double maxLearnts;
+
+    // Conflict analysis scratch
+    private final boolean[] seen;
+    private int[] learnt = new int[16];
+    private int learntSize;
+    private int[] toClear = new int[16];
+    private final int[] literalStamp; // literal -> last addClause() call that held it
+    private int clauseStamp;
+
+    CdclSolver(int variables, SolverStats stats) {
+        this.variables = variables;
+        this.stats = stats;
+        int literals = 2 * variables + 2;
+        value = new byte[literals];
+        level = new int[variables + 1];
+        reason = new Clause[variables + 1];
+        trail = new int[variables + 1];
+        watches = new Clause[literals][];
+        watchCount = new int[literals];
+        activity = new double[variables + 1];
+        heap = new int[variables + 1];
+        heapIndex = new int[variables + 1];
+        phase = new boolean[variables + 1];
+        seen = new boolean[variables + 1];
+        literalStamp = new int[literals];
+        Arrays.fill(heapIndex, -1);
+        for (int v = 1; v <= variables; v++) {
+            heapInsert(v);
+        }
+    }
+
+    // Adds a clause of DIMACS literals (v or -v); false once the clauses
+    // are known to be unsatisfiable. Call before solve().
+    boolean addClause(int[] dimacs) {
+        if (unsat) return false;
+        int[] literals = new int[dimacs.length];
+        int count = 0;
+        clauseStamp++;
+        for (int d : dimacs) {
+            int literal = d > 0 ? 2 * d : -2 * d + 1;
+            if (value[literal] > 0 || literalStamp[literal ^ 1] == clauseStamp) {
+                return true; // satisfied at the root, or a tautology
+            }
+            if (value[literal] < 0 || literalStamp[literal] == clauseStamp) continue;
+            literalStamp[literal] = clauseStamp;
+            literals[count++] = literal;
+        }
+        if (count == 0) {
+            unsat = true;
+            return false;
+        }
+        if (count == 1) {
+            assign(literals[0], null);
+        } else {
+            attach(new Clause(Arrays.copyOf(literals, count), false));
+            clauseCount++;
+        }
+        return true;
+    }
+
+    // Value of a variable in the model found by solve()
+    boolean modelValue(int variable) {
+        return value[2 * variable] > 0;
+    }
+
+    // SOLVED with a model, UNSAT, or TIMEOUT / CANCELLED when the limits or
+    // the cancel flag (may be null) stopped the search
+    SolveStatus solve(SearchLimits limits, AtomicBoolean cancelled) {
+        if (unsat || propagate() != null) {
+            unsat = true;
+            return SolveStatus.UNSAT;
+        }
+        maxLearnts = Math.max(clauseCount / 3.0, 2000);
+        for (int run = 0; ; run++) {
+            SolveStatus status = search(RESTARTS.budget(run), limits, cancelled);
+            if (status != null) return status;
+            stats.restarts++;
+        }
+    }
+
+    // One run; null once it has met its conflict budget and gone back to
+    // the root
+    private SolveStatus search(long conflictBudget, SearchLimits limits, AtomicBoolean cancelled) {
+        long conflicts = 0;
+        while (true) {
+            Clause conflict = propagate();
+            if (conflict != null) {
+                stats.backtracks++;
+                conflicts++;
+                if (decisionLevel == 0) {
+                    unsat = true;
+                    return SolveStatus.UNSAT;
+                }
+                int backjumpLevel = analyze(conflict);
+                backtrack(backjumpLevel);
+                if (learntSize == 1) {
+                    assign(learnt[0], null);
+                } else {
+                    Clause clause = new Clause(Arrays.copyOf(learnt, learntSize), true);
+                    learnts.add(clause);
+                    attach(clause);
+                    bumpClause(clause);
+                    assign(learnt[0], clause);
+                    stats.nogoodsLearned++;
+                }
+                variableIncrement /= VAR_DECAY;
+                clauseIncrement /= CLAUSE_DECAY;
+                if ((stats.backtracks & (SearchLimits.CHECK_INTERVAL - 1)) == 0) {
+                    SolveStatus stop = checkClock(limits);
+                    if (stop != null) return stop;
+                }
+            } else {
+                if (conflicts >= conflictBudget) {
+                    backtrack(0);
+                    return null;
+                }
+                if (learnts.size() - trailSize >= maxLearnts) reduceLearnts();
+                int decision = pickBranch();
+                if (decision < 0) return SolveStatus.SOLVED;
+
+                long nodes = ++stats.nodes;
+                if (nodes > limits.maxNodes) return SolveStatus.TIMEOUT;
+                if ((cancelled != null && cancelled.get()) || (limits.token != null && limits.token.isCancelled())) {
+                    return SolveStatus.CANCELLED;
+                }
+                if ((nodes & (SearchLimits.CHECK_INTERVAL - 1)) == 1) {
+                    if (limits.progress != null) {
+                        limits.progress.report(nodes == 1 ? 1 : SearchLimits.CHECK_INTERVAL, decisionLevel);
+                    }
+                    SolveStatus stop = checkClock(limits);
+                    if (stop != null) return stop;
+                }
+
+                if (decisionLevel == levelStart.length) levelStart = Arrays.copyOf(levelStart, decisionLevel * 2);
+                levelStart[decisionLevel++] = trailSize;
+                if (decisionLevel > stats.maxDepth) stats.maxDepth = decisionLevel;
+                assign(decision, null);
+            }
+        }
+    }
+
+    private SolveStatus checkClock(SearchLimits limits) {
+        if (limits.hasDeadline && System.nanoTime() - limits.deadline >= 0) return SolveStatus.TIMEOUT;
+        if (Thread.currentThread().isInterrupted()) return SolveStatus.CANCELLED;
+        return null;
+    }
+
+    private void assign(int literal, Clause cause) {
+        int v = literal >> 1;
+        value[literal] = 1;
+        value[literal ^ 1] = -1;
+        level[v] = decisionLevel;
+        reason[v] = cause;
+        trail[trailSize++] = literal;
+    }
+
+    // Unit propagation over the watch lists; returns a falsified clause, or
+    // null at a fixpoint
+    private Clause propagate() {
+        while (propagated < trailSize) {
+            int falseLiteral = trail[propagated++] ^ 1;
+            Clause[] list = watches[falseLiteral];
+            int count = watchCount[falseLiteral];
+            int i = 0, j = 0;
+            while (i < count) {
+                Clause clause = list[i++];
+                if (clause.deleted) continue;
+                int[] literals = clause.literals;
+                // Keep the false literal in slot 1
+                if (literals[0] == falseLiteral) {
+                    literals[0] = literals[1];
+                    literals[1] = falseLiteral;
+                }
+                int first = literals[0];
+                if (value[first] > 0) {
+                    list[j++] = clause;
+                    continue;
+                }
+                boolean moved = false;
+                for (int k = 2; k < literals.length; k++) {
+                    if (value[literals[k]] >= 0) {
+                        literals[1] = literals[k];
+                        literals[k] = falseLiteral;
+                        watch(literals[1], clause);
+                        moved = true;
+                        break;
+                    }
+                }
+                if (moved) continue;
+                list[j++] = clause;
+                if (value[first] < 0) {
+                    // Conflict: keep the rest of the list and stop
+                    while (i < count) {
+                        list[j++] = list[i++];
+                    }
+                    watchCount[falseLiteral] = j;
+                    propagated = trailSize;
+                    return clause;
+                }
+                assign(first, clause);
+            }
+            watchCount[falseLiteral] = j;
+        }
+        return null;
+    }
+
+    // First-UIP analysis: leaves the learnt clause in learnt[0..learntSize)
+    // with the asserting literal first and a literal of the backjump level
+    // second, and returns that level
+    private int analyze(Clause conflict) {
+        int pending = 0;   // literals of the conflict level still to resolve
+        int literal = -1;
+        int index = trailSize - 1;
+        learntSize = 1;    // slot 0 is for the asserting literal
+        do {
+            if (conflict.learnt) bumpClause(conflict);
+            int[] literals = conflict.literals;
+            for (int k = literal < 0 ? 0 : 1; k < literals.length; k++) {
+                int q = literals[k];
+                int v = q >> 1;
+                if (seen[v] || level[v] == 0) continue;
+                seen[v] = true;
+                bumpVariable(v);
+                if (level[v] >= decisionLevel) {
+                    pending++;
+                } else {
+                    addLearnt(q);
+                }
+            }
+            while (!seen[trail[index--] >> 1]) {
+            }
+            literal = trail[index + 1];
+            conflict = reason[literal >> 1];
+            seen[literal >> 1] = false;
+            pending--;
+        } while (pending > 0);
+        learnt[0] = literal ^ 1;
+
+        // Drop literals implied by the others' reasons (local minimization)
+        if (toClear.length < learntSize) toClear = new int[learnt.length];
+        System.arraycopy(learnt, 0, toClear, 0, learntSize);
+        int clearCount = learntSize;
+        int kept = 1;
+        for (int i = 1; i < learntSize; i++) {
+            Clause cause = reason[learnt[i] >> 1];
+            if (cause == null || !impliedBySeen(cause)) learnt[kept++] = learnt[i];
+        }
+        learntSize = kept;
+        for (int i = 1; i < clearCount; i++) {
+            seen[toClear[i] >> 1] = false;
+        }
+
+        if (learntSize == 1) return 0;
+        int max = 1;
+        for (int i = 2; i < learntSize; i++) {
+            if (level[learnt[i] >> 1] > level[learnt[max] >> 1]) max = i;
+        }
+        int swap = learnt[1];
+        learnt[1] = learnt[max];
+        learnt[max] = swap;
+        return level[learnt[1] >> 1];
+    }
+
+    private boolean impliedBySeen(Clause cause) {
+        int[] literals = cause.literals;
+        for (int k = 1; k < literals.length; k++) {
+            int v = literals[k] >> 1;
+            if (!seen[v] && level[v] > 0) return false;
+        }
+        return true;
+    }
+
+    private void addLearnt(int literal) {
+        if (learntSize == learnt.length) learnt = Arrays.copyOf(learnt, learntSize * 2);
+        learnt[learntSize++] = literal;
+    }
+
+    // Undoes every level above the given one, saving the phases
+    private void backtrack(int target) {
+        if (decisionLevel <= target) return;
+        int start = levelStart[target];
+        for (int i = trailSize - 1; i >= start; i--) {
+            int literal = trail[i];
+            int v = literal >> 1;
+            phase[v] = (literal & 1) == 0;
+            value[literal] = 0;
+            value[literal ^ 1] = 0;
+            reason[v] = null;
+            if (heapIndex[v] < 0) heapInsert(v);
+        }
+        trailSize = start;
+        propagated = start;
+        decisionLevel = target;
+    }
+
+    // Most active unassigned variable in its saved phase (false at first,
+    // which suits one-hot encodings); -1 once every variable is assigned
+    private int pickBranch() {
+        while (heapSize > 0) {
+            int v = heapRemoveMax();
+            if (value[2 * v] == 0) return phase[v] ? 2 * v : 2 * v + 1;
+        }
+        return -1;
+    }
+
+    // Drops the less active half of the learnt clauses, sparing binary
+    // clauses and clauses that are the reason for a current assignment.
+    // Watch lists let go of them lazily.
+    private void reduceLearnts() {
+        learnts.sort((a, b) -> Double.compare(a.activity, b.activity));
+        int half = learnts.size() / 2;
+        int kept = 0;
+        for (int i = 0; i < learnts.size(); i++) {
+            Clause clause = learnts.get(i);
+            int implied = clause.literals[0];
+            boolean locked = reason[implied >> 1] == clause && value[implied] > 0;
+            if (i < half && !locked && clause.literals.length > 2) {
+                clause.deleted = true;
+            } else {
+                learnts.set(kept++, clause);
+            }
+        }
+        learnts.subList(kept, learnts.size()).clear();
+        maxLearnts *= 1.1;
+    }
+
+    private void attach(Clause clause) {
+        watch(clause.literals[0], clause);
+        watch(clause.literals[1], clause);
+    }
+
+    private void watch(int literal, Clause clause) {
+        Clause[] list = watches[literal];
+        if (list == null) {
+            list = watches[literal] = new Clause[4];
+        } else if (watchCount[literal] == list.length) {
+            list = watches[literal] = Arrays.copyOf(list, list.length * 2);
+        }
+        list[watchCount[literal]++] = clause;
+    }
+
+    private void bumpVariable(int v) {
+        if ((activity[v] += variableIncrement) > 1e100) {
+            for (int u = 1; u <= variables; u++) {
+                activity[u] *= 1e-100;
+            }
+            variableIncrement *= 1e-100;
+        }
+        if (heapIndex[v] >= 0) siftUp(heapIndex[v]);
+    }
+
+    private void bumpClause(Clause clause) {
+        if ((clause.activity += clauseIncrement) > 1e20) {
+            for (Clause other : learnts) {
+                other.activity *= 1e-20;
+            }
+            clauseIncrement *= 1e-20;
+        }
+    }
+
+    private void heapInsert(int v) {
+        heap[heapSize] = v;
+        heapIndex[v] = heapSize;
+        siftUp(heapSize++);
+    }
+
+    private int heapRemoveMax() {
+        int top = heap[0];
+        heapIndex[top] = -1;
+        int last = heap[--heapSize];
+        if (heapSize > 0) {
+            heap[0] = last;
+            heapIndex[last] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftUp(int position) {
+        int v = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >> 1;
+            if (activity[heap[parent]] >= activity[v]) break;
+            heap[position] = heap[parent];
+            heapIndex[heap[position]] = position;
+            position = parent;
+        }
+        heap[position] = v;
+        heapIndex[v] = position;
+    }
+
+    private void siftDown(int position) {
+        int v = heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && activity[heap[child + 1]] > activity[heap[child]]) child++;
+            if (activity[heap[child]] <= activity[v]) break;
+            heap[position] = heap[child];
+            heapIndex[heap[position]] = position;
+            position = child;
+        }
+        heap[position] = v;
+        heapIndex[v] = position;
+    }
+}
@@ -0,0 +1,149 @@
+import java.util.Arrays;
+import java.util.List;
+
+// Immutable view of the constraint graph, built once per solve so the hot
+// paths never scan the group list. Cells are indexed by row * N + col.
+public class ConstraintIndex {
+    final int N;
+    final Cell[] cells;         // cell index -> shared Cell instance
+    final int[][] cagesOf;      // cell index -> ids of the cages containing it
+    final int[][] peers;        // cell index -> distinct row, column and cage peers
+    final int[][] cageCells;    // cage id -> member cell indexes, in input order
+    final char[] cageOperator;  // cage id -> operator
+    final int[] cageTarget;     // cage id -> target
+    final int[][] scope;        // constraint id -> its cells (see rowConstraint())
+
+    ConstraintIndex(int N, List<Group> groups) {
+        this.N = N;
+        int cellCount = N * N;
+        int cageCount = groups.size();
+
+        cells = new Cell[cellCount];
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < N; j++) {
+                cells[i * N + j] = new Cell(i, j);
+            }
+        }
+
+        cageCells = new int[cageCount][];
+        cageOperator = new char[cageCount];
+        cageTarget = new int[cageCount];
+        int[] cageCountOf = new int[cellCount];
+        for (int g = 0; g < cageCount; g++) {
+            Group group = groups.get(g);
+            int[] members = new int[group.cells.size()];
+            for (int k = 0; k < members.length; k++) {
+                Cell cell = group.cells.get(k);
+                members[k] = cell.row * N + cell.col;
+                cageCountOf[members[k]]++;
+            }
+            cageCells[g] = members;
+            cageOperator[g] = group.operator;
+            cageTarget[g] = group.target;
+        }
+
+        cagesOf = new int[cellCount][];
+        for (int c = 0; c < cellCount; c++) {
+            cagesOf[c] = new int[cageCountOf[c]];
+            cageCountOf[c] = 0;
+        }
+        for (int g = 0; g < cageCount; g++) {
+            for (int member : cageCells[g]) {
+                cagesOf[member][cageCountOf[member]++] = g;
+            }
+        }
+
+        // Peers: row and column first, then cage members not already listed
+        peers = new int[cellCount][];
+        int[] mark = new int[cellCount];
+        int[] buffer = new int[cellCount];
+        for (int c = 0; c < cellCount; c++) {
+            int row = c / N, col = c % N;
+            int stamp = c + 1;
+            int count = 0;
+            mark[c] = stamp;
+            for (int k = 0; k < N; k++) {
+                int rowPeer = row * N + k;
+                if (mark[rowPeer] != stamp) {
+                    mark[rowPeer] = stamp;
+                    buffer[count++] = rowPeer;
+                }
+                int colPeer = k * N + col;
+                if (mark[colPeer] != stamp) {
+                    mark[colPeer] = stamp;
+                    buffer[count++] = colPeer;
+                }
+            }
+            for (int g : cagesOf[c]) {
+                for (int member : cageCells[g]) {
+                    if (mark[member] != stamp) {
+                        mark[member] = stamp;
+                        buffer[count++] = member;
+                    }
+                }
+            }
+            peers[c] = Arrays.copyOf(buffer, count);
+        }
+
+        scope = new int[constraintCount()][];
+        for (int i = 0; i < N; i++) {
+            scope[rowConstraint(i)] = new int[N];
+            scope[colConstraint(i)] = new int[N];
+            for (int k = 0; k < N; k++) {
+                scope[rowConstraint(i)][k] = i * N + k;
+                scope[colConstraint(i)][k] = k * N + i;
+            }
+        }
+        for (int g = 0; g < cageCount; g++) {
+            scope[cageConstraint(g)] = cageCells[g];
+        }
+    }
+
+    int index(int row, int col) {
+        return row * N + col;
+    }
+
+    int row(int cellIndex) {
+        return cellIndex / N;
+    }
+
+    int col(int cellIndex) {
+        return cellIndex % N;
+    }
+
+    boolean sameLine(int a, int b) {
+        return row(a) == row(b) || col(a) == col(b);
+    }
+
+    // Constraint ids used for conflict weighting: rows, then columns, then cages
+    int constraintCount() {
+        return 2 * N + cageCells.length;
+    }
+
+    int rowConstraint(int row) {
+        return row;
+    }
+
+    int colConstraint(int col) {
+        return N + col;
+    }
+
+    int cageConstraint(int cage) {
+        return 2 * N + cage;
+    }
+
+    // Row or column constraint shared by two cells of the same line
+    int lineConstraint(int a, int b) {
+        return row(a) == row(b) ? rowConstraint(row(a)) : colConstraint(col(a));
+    }
+
+    // First cage containing both cells, or -1 if they share none
+    int sharedCage(int a, int b) {
+        for (int ga : cagesOf[a]) {
+            for (int gb : cagesOf[b]) {
+                if (ga == gb) return ga;
+            }
+        }
+        return -1;
+    }
+}
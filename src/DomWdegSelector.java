@@ -0,0 +1,63 @@
+import java.util.Arrays;
+import java.util.Random;
+
+// dom/wdeg: every constraint starts with weight 1 and gains 1 each time its
+// propagation wipes out a domain. The cell with the smallest ratio of domain
+// size to the summed weight of its row, column and groups is chosen; ties
+// go to the first such cell, or to a random one when a random source is set.
+public class DomWdegSelector implements VariableSelector {
+    private final ConstraintIndex index;
+    private final DomainStore domains;
+    private final boolean[] assigned;
+    private final int[] weight; // constraint id -> weight
+    private final Random random;
+
+    DomWdegSelector(ConstraintIndex index, DomainStore domains, Random random) {
+        this.index = index;
+        this.domains = domains;
+        this.random = random;
+        this.assigned = new boolean[index.cells.length];
+        this.weight = new int[index.constraintCount()];
+        Arrays.fill(weight, 1);
+    }
+
+    @Override
+    public int select() {
+        int best = -1;
+        // Compare size / wdeg as size * bestWdeg < bestSize * wdeg
+        long bestSize = 1, bestWdeg = 0;
+        int ties = 0;
+        for (int c = 0; c < assigned.length; c++) {
+            if (assigned[c]) continue;
+            long size = domains.size(c);
+            long wdeg = weight[index.rowConstraint(index.row(c))] + weight[index.colConstraint(index.col(c))];
+            for (int g : index.cagesOf[c]) {
+                wdeg += weight[index.cageConstraint(g)];
+            }
+            if (best < 0 || size * bestWdeg < bestSize * wdeg) {
+                best = c;
+                bestSize = size;
+                bestWdeg = wdeg;
+                ties = 1;
+            } else if (random != null && size * bestWdeg == bestSize * wdeg && random.nextInt(++ties) == 0) {
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public void assigned(int cell) {
+        assigned[cell] = true;
+    }
+
+    @Override
+    public void unassigned(int cell) {
+        assigned[cell] = false;
+    }
+
+    @Override
+    public void conflict(int constraint) {
+        if (constraint >= 0) weight[constraint]++;
+    }
+}
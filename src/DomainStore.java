@@ -0,0 +1,294 @@
+import java.util.Arrays;
+
+public class DomainStore {
+    // Bit (v - 1) of a mask is set when value v is still allowed, so a
+    // domain over 1..N fits in a single int for N <= 32
+    static final int MAX_N = 32;
+
+    private final int N;
+    private final int[] masks; // indexed by row * N + col
+
+    // Undo trail: (cell, old mask) pairs recorded on the first change of a
+    // cell within the current level, so backtracking only restores what the
+    // level touched. levels holds (trail size, stamp) per open level.
+    private int[] trail;
+    private int trailSize;
+    private int[] levels;
+    private int depth;
+    private final int[] savedStamp; // stamp of the level that last saved each cell
+    private int stamp;
+    private int nextStamp;
+
+    // Notified of every mask change, including undo; may be null
+    private Listener listener;
+
+    interface Listener {
+        void domainChanged(int idx, int oldMask, int newMask);
+    }
+
+    // Cells narrowed since the propagators last looked, without duplicates
+    private final int[] dirty;
+    private final boolean[] isDirty;
+    private int dirtyCount;
+
+    // Optional explanations for conflict-directed backjumping: for each
+    // cell, the set of levels whose decisions its current domain depends
+    // on, as a bitset of words longs. Saved on the trail with the masks.
+    // Level bits start at 1; root changes are explained by nothing.
+    private long[] explanation;      // cell * words + w
+    private long[] explanationTrail; // words per trail entry
+    private int words;
+    private int emptied = -1;        // last cell whose domain was emptied
+
+    DomainStore(int N) {
+        if (N < 1 || N > MAX_N) {
+            throw new IllegalArgumentException("Grid size must be between 1 and " + MAX_N + ": " + N);
+        }
+        this.N = N;
+        this.masks = new int[N * N];
+        this.trail = new int[4 * N * N];
+        this.levels = new int[2 * (N * N + 1)];
+        this.savedStamp = new int[N * N];
+        this.dirty = new int[N * N];
+        this.isDirty = new boolean[N * N];
+    }
+
+    // Every cell gets the full domain 1..N at a fresh root level
+    void fill() {
+        int full = fullMask(N);
+        for (int i = 0; i < masks.length; i++) {
+            masks[i] = full;
+        }
+        trailSize = 0;
+        depth = 0;
+        clearDirty();
+        clearExplanations();
+    }
+
+    int index(int row, int col) {
+        return row * N + col;
+    }
+
+    int cellCount() {
+        return masks.length;
+    }
+
+    int mask(int idx) {
+        return masks[idx];
+    }
+
+    void setMask(int idx, int mask) {
+        int old = masks[idx];
+        if (old != mask) {
+            save(idx);
+            masks[idx] = mask;
+            if (mask == 0) emptied = idx;
+            markDirty(idx);
+            if (listener != null) listener.domainChanged(idx, old, mask);
+        }
+    }
+
+    int size(int idx) {
+        return Integer.bitCount(masks[idx]);
+    }
+
+    boolean isEmpty(int idx) {
+        return masks[idx] == 0;
+    }
+
+    boolean contains(int idx, int value) {
+        return (masks[idx] & bit(value)) != 0;
+    }
+
+    // Returns true if the value was present and has been removed
+    boolean remove(int idx, int value) {
+        int old = masks[idx];
+        int updated = old & ~bit(value);
+        if (updated == old) {
+            return false;
+        }
+        save(idx);
+        masks[idx] = updated;
+        if (updated == 0) emptied = idx;
+        markDirty(idx);
+        if (listener != null) listener.domainChanged(idx, old, updated);
+        return true;
+    }
+
+    // Opens a new undo level; changes from here on are recorded on the trail
+    void pushLevel() {
+        if (2 * depth + 2 > levels.length) {
+            levels = Arrays.copyOf(levels, levels.length * 2);
+        }
+        levels[2 * depth] = trailSize;
+        levels[2 * depth + 1] = stamp;
+        depth++;
+        stamp = ++nextStamp;
+    }
+
+    // Restores every mask changed since the matching pushLevel()
+    void popLevel() {
+        depth--;
+        int checkpoint = levels[2 * depth];
+        while (trailSize > checkpoint) {
+            trailSize -= 2;
+            int idx = trail[trailSize];
+            int old = masks[idx];
+            masks[idx] = trail[trailSize + 1];
+            if (explanation != null) {
+                System.arraycopy(explanationTrail, (trailSize >> 1) * words, explanation, idx * words, words);
+            }
+            if (listener != null) listener.domainChanged(idx, old, masks[idx]);
+        }
+        stamp = levels[2 * depth + 1];
+    }
+
+    void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    private void markDirty(int idx) {
+        if (!isDirty[idx]) {
+            isDirty[idx] = true;
+            dirty[dirtyCount++] = idx;
+        }
+    }
+
+    boolean hasDirty() {
+        return dirtyCount > 0;
+    }
+
+    int pollDirty() {
+        int idx = dirty[--dirtyCount];
+        isDirty[idx] = false;
+        return idx;
+    }
+
+    void clearDirty() {
+        while (dirtyCount > 0) {
+            pollDirty();
+        }
+    }
+
+    int[] copyMasks() {
+        return masks.clone();
+    }
+
+    // Makes the given masks the new root state, dropping the trail
+    void load(int[] snapshot) {
+        System.arraycopy(snapshot, 0, masks, 0, masks.length);
+        trailSize = 0;
+        depth = 0;
+        clearDirty();
+        clearExplanations();
+    }
+
+    int depth() {
+        return depth;
+    }
+
+    private void save(int idx) {
+        // Changes at the root level are permanent
+        if (depth == 0 || savedStamp[idx] == stamp) {
+            return;
+        }
+        savedStamp[idx] = stamp;
+        if (trailSize + 2 > trail.length) {
+            trail = Arrays.copyOf(trail, trail.length * 2);
+        }
+        if (explanation != null) {
+            int at = (trailSize >> 1) * words;
+            if (at + words > explanationTrail.length) {
+                explanationTrail = Arrays.copyOf(explanationTrail, Math.max(2 * explanationTrail.length, at + words));
+            }
+            System.arraycopy(explanation, idx * words, explanationTrail, at, words);
+        }
+        trail[trailSize++] = idx;
+        trail[trailSize++] = masks[idx];
+    }
+
+    // Starts tracking explanations; levels go up to one per cell
+    void enableExplanations() {
+        if (explanation != null) return;
+        words = (masks.length + 1 + 63) >>> 6;
+        explanation = new long[masks.length * words];
+        explanationTrail = new long[trail.length / 2 * words];
+    }
+
+    boolean explains() {
+        return explanation != null;
+    }
+
+    private void clearExplanations() {
+        if (explanation != null) Arrays.fill(explanation, 0);
+        emptied = -1;
+    }
+
+    // Bitsets over levels sized for explainInto() and the level helpers
+    long[] newLevelSet() {
+        return new long[words];
+    }
+
+    // The domain of idx now also depends on the decision of a level
+    void explainLevel(int idx, int level) {
+        if (explanation == null) return;
+        save(idx);
+        explanation[idx * words + (level >>> 6)] |= 1L << level;
+    }
+
+    // The domain of idx now also depends on the domain of source
+    void explainFrom(int idx, int source) {
+        if (explanation == null) return;
+        save(idx);
+        int to = idx * words, from = source * words;
+        for (int w = 0; w < words; w++) {
+            explanation[to + w] |= explanation[from + w];
+        }
+    }
+
+    // The domain of idx now also depends on the domains of the other
+    // cells of a constraint
+    void explainFrom(int idx, int[] scope) {
+        if (explanation == null) return;
+        save(idx);
+        int to = idx * words;
+        for (int source : scope) {
+            if (source == idx) continue;
+            int from = source * words;
+            for (int w = 0; w < words; w++) {
+                explanation[to + w] |= explanation[from + w];
+            }
+        }
+    }
+
+    // Adds the explanation of a cell to a level set
+    void explainInto(int idx, long[] levels) {
+        int from = idx * words;
+        for (int w = 0; w < words; w++) {
+            levels[w] |= explanation[from + w];
+        }
+    }
+
+    // Last cell emptied since clearEmptied(), or -1
+    int emptied() {
+        return emptied;
+    }
+
+    void clearEmptied() {
+        emptied = -1;
+    }
+
+    static int fullMask(int N) {
+        return N == 32 ? -1 : (1 << N) - 1;
+    }
+
+    static int bit(int value) {
+        return 1 << (value - 1);
+    }
+
+    // Smallest value in a non-empty mask; iterate a mask with
+    // for (int m = mask; m != 0; m &= m - 1) { int v = lowestValue(m); ... }
+    static int lowestValue(int mask) {
+        return Integer.numberOfTrailingZeros(mask) + 1;
+    }
+}
@@ -0,0 +1,45 @@
+import java.util.Random;
+
+// Least constraining value: values that appear in the fewest domains of
+// the cell's unassigned peers are tried first, ties by value or, with a
+// random source, in random order
+public class LeastConstrainingValueOrderer implements ValueOrderer {
+    private final ConstraintIndex index;
+    private final DomainStore domains;
+    private final Random random;
+    private final long[] cost; // scratch, value - 1 -> peers that would lose it, then a tie-break key
+
+    LeastConstrainingValueOrderer(ConstraintIndex index, DomainStore domains, Random random) {
+        this.index = index;
+        this.domains = domains;
+        this.random = random;
+        this.cost = new long[DomainStore.MAX_N];
+    }
+
+    @Override
+    public int order(int cell, int mask, int[] out) {
+        int count = 0;
+        for (int m = mask; m != 0; m &= m - 1) {
+            int value = DomainStore.lowestValue(m);
+            int bit = DomainStore.bit(value);
+            long c = 0;
+            for (int peer : index.peers[cell]) {
+                int peerMask = domains.mask(peer);
+                // Singletons are assigned or about to be; they cannot lose more
+                if ((peerMask & bit) != 0 && Integer.bitCount(peerMask) > 1) c++;
+            }
+            // Random low bits order the values that tie on the count
+            if (random != null) c = c << 32 | random.nextInt() & 0xFFFFFFFFL;
+            cost[value - 1] = c;
+
+            // Insertion sort by cost; values arrive in ascending order
+            int k = count++;
+            while (k > 0 && cost[out[k - 1] - 1] > c) {
+                out[k] = out[k - 1];
+                k--;
+            }
+            out[k] = value;
+        }
+        return count;
+    }
+}
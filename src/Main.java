@@ -1,4 +1,3 @@
-import java.util.ArrayList;
 import java.util.List;
 
 public class Main{
@@ -99,43 +98,6 @@ public class Main{
     }
 
     public static CSPPuzzleSolver readPuzzle(List<String> data) {
-        CSPPuzzleSolver solver = null;
-
-        int n = Integer.parseInt(data.get(0));
-
-        solver = new CSPPuzzleSolver(n);
-
-        //each line a group
-        for(int i = 1; i < data.size(); i++){
-            if (data.get(i).startsWith("#")) {
-                continue;
-            }
-
-            String[] data1 = data.get(i).split("->");
-            //first index will have groups 0,0;1,0
-            //second index will have two things, operator, and then result
-
-            List<Cell> cells = new ArrayList<>();
-            String[] cellsData = data1[0]
-                        .split(";");
-
-            for(String cellData : cellsData){
-                String[] cords = cellData.split(",");
-
-                Cell cell = new Cell(Integer.parseInt(cords[0]),
-                            Integer.parseInt(cords[1]));
-
-                cells.add(cell);
-            }
-
-            String[] result = data1[1].split(",");
-
-            char operator = result[0].charAt(0);
-            int target = Integer.parseInt(result[1]);
-            
-            solver.addGroup(cells, operator, target);
-        }    
-    
-        return solver;
+        return PuzzleParser.parse(data);
     }
 }
\ No newline at end of file
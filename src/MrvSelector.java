@@ -0,0 +1,109 @@
+import java.util.Arrays;
+import java.util.Random;
+
+// Minimum remaining values over a bucket queue: unassigned cells sit in
+// doubly linked lists indexed by domain size and a bitmask records the
+// non-empty buckets, so the smallest domain is found in O(1) and domain
+// changes (including undo) move a cell in O(1). With a random source, ties
+// go to a uniformly chosen cell of the smallest bucket instead of its head.
+public class MrvSelector implements VariableSelector, DomainStore.Listener {
+    private final ConstraintIndex index;
+    private final DomainStore domains;
+    private final boolean degreeTieBreak;
+    private final Random random;    // breaks ties when set, else first cell wins
+
+    private final int[] bucketHead; // domain size -> first cell, or -1
+    private final int[] next;
+    private final int[] prev;
+    private final int[] bucketOf;   // cell -> its bucket, or -1 when assigned
+    private long nonEmpty;          // bit s set when bucket s has cells
+
+    MrvSelector(ConstraintIndex index, DomainStore domains, boolean degreeTieBreak, Random random) {
+        this.index = index;
+        this.domains = domains;
+        this.degreeTieBreak = degreeTieBreak;
+        this.random = random;
+
+        int cellCount = index.cells.length;
+        bucketHead = new int[DomainStore.MAX_N + 1];
+        Arrays.fill(bucketHead, -1);
+        next = new int[cellCount];
+        prev = new int[cellCount];
+        bucketOf = new int[cellCount];
+        // Insert in reverse so each bucket lists cells in row-major order
+        for (int c = cellCount - 1; c >= 0; c--) {
+            insert(c, domains.size(c));
+        }
+        domains.setListener(this);
+    }
+
+    @Override
+    public int select() {
+        if (nonEmpty == 0) return -1;
+        int size = Long.numberOfTrailingZeros(nonEmpty);
+        int best = bucketHead[size];
+        if (!degreeTieBreak && random == null) return best;
+
+        // Reservoir sampling over the cells that tie for best
+        int bestDegree = -1;
+        int ties = 0;
+        for (int c = best; c >= 0; c = next[c]) {
+            int degree = 0;
+            if (degreeTieBreak) {
+                for (int peer : index.peers[c]) {
+                    if (bucketOf[peer] >= 0) degree++;
+                }
+            }
+            if (degree > bestDegree) {
+                bestDegree = degree;
+                best = c;
+                ties = 1;
+            } else if (degree == bestDegree && random != null && random.nextInt(++ties) == 0) {
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public void assigned(int cell) {
+        unlink(cell);
+    }
+
+    @Override
+    public void unassigned(int cell) {
+        insert(cell, domains.size(cell));
+    }
+
+    @Override
+    public void domainChanged(int cell, int oldMask, int newMask) {
+        if (bucketOf[cell] < 0) return;
+        int size = Integer.bitCount(newMask);
+        if (size != bucketOf[cell]) {
+            unlink(cell);
+            insert(cell, size);
+        }
+    }
+
+    private void insert(int cell, int size) {
+        int head = bucketHead[size];
+        next[cell] = head;
+        prev[cell] = -1;
+        if (head >= 0) prev[head] = cell;
+        bucketHead[size] = cell;
+        bucketOf[cell] = size;
+        nonEmpty |= 1L << size;
+    }
+
+    private void unlink(int cell) {
+        int size = bucketOf[cell];
+        if (prev[cell] >= 0) {
+            next[prev[cell]] = next[cell];
+        } else {
+            bucketHead[size] = next[cell];
+            if (next[cell] < 0) nonEmpty &= ~(1L << size);
+        }
+        if (next[cell] >= 0) prev[next[cell]] = prev[cell];
+        bucketOf[cell] = -1;
+    }
+}
@@ -0,0 +1,157 @@
+import java.util.Arrays;
+
+// Bounded database of learned nogoods: sets of (cell = value) decisions
+// that cannot all hold in a solution. Each nogood watches two of its
+// decisions that do not hold yet, MiniSat style, and is only looked at
+// when one of those is made: the watch moves to another decision still
+// open, or, when every other one holds, the last one is ruled out by
+// removing its value. Backtracking needs no bookkeeping, and a decision
+// costs a visit to the few nogoods watching it rather than a scan at
+// every value tried. A nogood of one decision just bans that value.
+// Once the store is full the oldest nogood makes room, and nogoods
+// longer than MAX_LENGTH are not kept, since they seldom match again.
+public class NogoodStore {
+    static final int MAX_LENGTH = 12;
+
+    private final int N;
+    private final DomainStore domains;
+    private final SolverStats stats;
+
+    // Ring of nogoods, MAX_LENGTH literals cell * N + value - 1 per slot;
+    // the first two of a slot are the watched ones
+    private final int[] literals;
+    private final int[] lengths; // slot -> literal count, 0 when empty
+    private int next;            // slot the next nogood goes into
+    private int size;
+
+    // literal -> slots of the nogoods watching it
+    private final int[][] watches;
+    private final int[] watchCount;
+    private final int[] banned; // cell -> values ruled out by nogoods of one decision
+
+    NogoodStore(int N, DomainStore domains, int capacity, SolverStats stats) {
+        this.N = N;
+        this.domains = domains;
+        this.stats = stats;
+        this.literals = new int[capacity * MAX_LENGTH];
+        this.lengths = new int[capacity];
+        this.watches = new int[N * N * N][];
+        this.watchCount = new int[N * N * N];
+        this.banned = new int[N * N];
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(lengths, 0);
+        Arrays.fill(watchCount, 0);
+        Arrays.fill(banned, 0);
+        next = 0;
+        size = 0;
+    }
+
+    // Stores the decisions cells[0..length) = values[0..length), given in
+    // the order they were made; returns false if the nogood is too long to
+    // keep. The last two are watched: they are the first to be undone.
+    boolean learn(int[] cells, int[] values, int length) {
+        if (length == 0 || length > MAX_LENGTH || lengths.length == 0) return false;
+        if (length == 1) {
+            banned[cells[0]] |= DomainStore.bit(values[0]);
+            return true;
+        }
+        int slot = next;
+        int base = slot * MAX_LENGTH;
+        if (lengths[slot] != 0) {
+            unwatch(literals[base], slot);
+            unwatch(literals[base + 1], slot);
+        } else {
+            size++;
+        }
+        literals[base] = literal(cells[length - 1], values[length - 1]);
+        literals[base + 1] = literal(cells[length - 2], values[length - 2]);
+        for (int k = 0; k < length - 2; k++) {
+            literals[base + 2 + k] = literal(cells[k], values[k]);
+        }
+        lengths[slot] = length;
+        watch(literals[base], slot);
+        watch(literals[base + 1], slot);
+        next = slot + 1 == lengths.length ? 0 : slot + 1;
+        return true;
+    }
+
+    // True if a nogood of one decision rules the value out
+    boolean banned(int cell, int value) {
+        return (banned[cell] & DomainStore.bit(value)) != 0;
+    }
+
+    // Called once cell has been decided to be value, on the decision's
+    // trail level. Removed values are explained by the decisions of the
+    // rest of their nogood. False once that empties a domain.
+    boolean decided(int cell, int value) {
+        int literal = literal(cell, value);
+        int[] list = watches[literal];
+        int k = 0;
+        while (k < watchCount[literal]) {
+            int slot = list[k];
+            int base = slot * MAX_LENGTH;
+            // Keep the decision just made in the second watch
+            if (literals[base] == literal) {
+                literals[base] = literals[base + 1];
+                literals[base + 1] = literal;
+            }
+            int end = base + lengths[slot];
+            int open = base + 2;
+            while (open < end && holds(literals[open])) open++;
+            if (open < end) {
+                // Watch a decision that is still open instead
+                literals[base + 1] = literals[open];
+                literals[open] = literal;
+                watch(literals[base + 1], slot);
+                list[k] = list[--watchCount[literal]];
+                continue;
+            }
+            // Everything else holds, so the other watched decision must not
+            int other = literals[base];
+            int otherCell = other / N;
+            if (domains.remove(otherCell, other % N + 1)) {
+                stats.nogoodPrunings++;
+                for (int i = base + 1; i < end; i++) {
+                    domains.explainFrom(otherCell, literals[i] / N);
+                }
+                if (domains.isEmpty(otherCell)) return false;
+            }
+            k++;
+        }
+        return true;
+    }
+
+    private int literal(int cell, int value) {
+        return cell * N + value - 1;
+    }
+
+    private boolean holds(int literal) {
+        return domains.mask(literal / N) == DomainStore.bit(literal % N + 1);
+    }
+
+    private void watch(int literal, int slot) {
+        int[] list = watches[literal];
+        if (list == null) {
+            list = watches[literal] = new int[4];
+        } else if (watchCount[literal] == list.length) {
+            list = watches[literal] = Arrays.copyOf(list, list.length * 2);
+        }
+        list[watchCount[literal]++] = slot;
+    }
+
+    private void unwatch(int literal, int slot) {
+        int[] list = watches[literal];
+        for (int k = 0; k < watchCount[literal]; k++) {
+            if (list[k] == slot) {
+                list[k] = list[--watchCount[literal]];
+                return;
+            }
+        }
+    }
+}
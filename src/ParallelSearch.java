@@ -0,0 +1,142 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+// Splits the backtracking tree of a prepared solver across a ForkJoinPool.
+// A task is a snapshot of domains and grid; it runs on a worker solver of
+// its own, explores shallow levels itself and forks the children of a node
+// whenever the pool runs out of queued work. Below MAX_SPLIT_DEPTH it
+// hands over to the sequential search. The first solution sets a shared
+// flag that every worker checks once per node; so does the first worker
+// stopped by the root's SearchLimits, whose node budget they share.
+public class ParallelSearch {
+    // Levels below the task root at which a task may still split
+    static final int MAX_SPLIT_DEPTH = 6;
+
+    private final CSPPuzzleSolver root;
+    private final int parallelism;
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private final AtomicReference<int[]> solution = new AtomicReference<>();
+    private final LongAdder nodes = new LongAdder(); // nodes expanded above the sequential search
+    private final AtomicLong budgetUsed = new AtomicLong(); // nodes charged against the shared budget
+    private final AtomicReference<SolveStatus> stopReason = new AtomicReference<>();
+    private final SolverStats workerStats = new SolverStats();
+
+    // Worker solvers not attached to a running task. A thread that joins
+    // may run another task, so workers belong to tasks, not threads.
+    private final ConcurrentLinkedQueue<CSPPuzzleSolver> idle = new ConcurrentLinkedQueue<>();
+
+    ParallelSearch(CSPPuzzleSolver root, int parallelism) {
+        this.root = root;
+        this.parallelism = parallelism;
+    }
+
+    boolean run() {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            // Waiting through the future keeps the caller interruptible
+            pool.submit(new SearchTask(root.snapshot())).get();
+        } catch (InterruptedException e) {
+            stop(SolveStatus.CANCELLED);
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        } finally {
+            pool.shutdownNow();
+        }
+        int[] values = solution.get();
+        root.setSolution(values);
+        if (values == null) root.setStopReason(stopReason.get());
+        workerStats.nodes += nodes.sum();
+        root.addStats(workerStats);
+        return values != null;
+    }
+
+    private class SearchTask extends RecursiveTask<Void> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[][] state;
+
+        SearchTask(int[][] state) {
+            this.state = state;
+        }
+
+        @Override
+        protected Void compute() {
+            if (cancelled.get()) return null;
+            CSPPuzzleSolver worker = idle.poll();
+            if (worker == null) {
+                worker = new CSPPuzzleSolver(root, cancelled, budgetUsed);
+            }
+            try {
+                worker.load(state);
+                search(worker, 0);
+                if (worker.getStopReason() != null) stop(worker.getStopReason());
+            } finally {
+                workerStats.add(worker.getStats());
+                idle.add(worker);
+            }
+            return null;
+        }
+
+        private boolean search(CSPPuzzleSolver worker, int depth) {
+            if (cancelled.get()) return false;
+            if (depth >= MAX_SPLIT_DEPTH) {
+                return worker.search() && found(worker);
+            }
+            nodes.increment();
+            int cell = worker.selectVariable();
+            if (cell < 0) return found(worker);
+
+            int[] values = new int[root.getN()];
+            int count = worker.orderValues(cell, values);
+            worker.markAssigned(cell);
+
+            // Split when other workers would otherwise go idle
+            if (getSurplusQueuedTaskCount() == 0 && count > 1) {
+                List<SearchTask> children = new ArrayList<>(count);
+                for (int k = 0; k < count; k++) {
+                    if (worker.assign(cell, values[k])) {
+                        children.add(new SearchTask(worker.snapshot()));
+                        worker.unassign(cell);
+                    }
+                }
+                worker.markUnassigned(cell);
+                invokeAll(children);
+                return cancelled.get();
+            }
+
+            for (int k = 0; k < count; k++) {
+                if (worker.assign(cell, values[k])) {
+                    if (search(worker, depth + 1)) return true;
+                    worker.unassign(cell);
+                }
+            }
+            worker.markUnassigned(cell);
+            return false;
+        }
+
+        private boolean found(CSPPuzzleSolver worker) {
+            if (solution.compareAndSet(null, worker.snapshot()[1])) {
+                cancelled.set(true);
+            }
+            return true;
+        }
+    }
+
+    // Records the first limit that ran out and stops every worker
+    private void stop(SolveStatus reason) {
+        stopReason.compareAndSet(null, reason);
+        cancelled.set(true);
+    }
+}
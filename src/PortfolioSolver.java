@@ -0,0 +1,173 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Races several solver configurations on the same puzzle and keeps the
+// first one to finish. Each configuration gets its own solver instance, and
+// the losers are stopped through a shared flag they check once per node.
+// Win counts per configuration are kept across calls to help tune the mix.
+// The entrants run on a thread pool owned by the portfolio; close() stops
+// it, interrupting any losers still winding down.
+public class PortfolioSolver implements AutoCloseable {
+    private final List<SolverOptions> configurations;
+    private final AtomicLongArray wins;
+    private final ExecutorService executor = newExecutor();
+
+    public PortfolioSolver(List<SolverOptions> configurations) {
+        if (configurations.isEmpty()) {
+            throw new IllegalArgumentException("Portfolio needs at least one configuration");
+        }
+        this.configurations = new ArrayList<>(configurations);
+        this.wins = new AtomicLongArray(configurations.size());
+    }
+
+    // A mix of propagation strengths, heuristics, search algorithms, the
+    // SAT engine and random seeds
+    public static List<SolverOptions> defaultConfigurations() {
+        List<SolverOptions> mix = new ArrayList<>();
+        mix.add(new SolverOptions());
+        mix.add(new SolverOptions()
+                .propagationLevel(PropagationLevel.MAC)
+                .allDifferentMode(AllDifferentMode.MATCHING)
+                .variableHeuristic(VariableHeuristic.MRV_DEGREE));
+        mix.add(new SolverOptions()
+                .allDifferentMode(AllDifferentMode.HALL)
+                .variableHeuristic(VariableHeuristic.DOM_WDEG));
+        mix.add(new SolverOptions()
+                .allDifferentMode(AllDifferentMode.MATCHING)
+                .valueHeuristic(ValueHeuristic.LEAST_CONSTRAINING));
+        mix.add(new SolverOptions()
+                .variableHeuristic(VariableHeuristic.DOM_WDEG)
+                .backjumping(true));
+        mix.add(new SolverOptions().engine(SolverEngine.SAT));
+        for (long seed = 1; seed <= 2; seed++) {
+            mix.add(new SolverOptions()
+                    .allDifferentMode(AllDifferentMode.HALL)
+                    .valueHeuristic(ValueHeuristic.RANDOM)
+                    .seed(seed));
+        }
+        return mix;
+    }
+
+    public static class Result {
+        // SOLVED or UNSAT from the winner; TIMEOUT or CANCELLED when the
+        // limits stopped every entrant first; ERROR when all of them threw
+        public final SolveStatus status;
+        public final int winner;              // index into the configurations, -1 without one
+        public final SolverOptions configuration;
+        public final long nodes;              // nodes visited by the winner
+        public final long nanos;
+        public final Throwable error;         // first entrant failure when status is ERROR
+
+        Result(SolveStatus status, int winner, SolverOptions configuration, long nodes, long nanos,
+                Throwable error) {
+            this.status = status;
+            this.winner = winner;
+            this.configuration = configuration;
+            this.nodes = nodes;
+            this.nanos = nanos;
+            this.error = error;
+        }
+    }
+
+    public Result solve(CSPPuzzleSolver puzzle) throws InterruptedException {
+        return solve(puzzle, new SearchLimits());
+    }
+
+    // Solves the puzzle held by the given solver, which receives the winning
+    // grid (getValueAt) and node count. The first configuration to finish
+    // decides: a solution, or a proof that there is none. Every entrant
+    // runs under the given limits: the deadline and token are shared, the
+    // node budget applies to each one, and progress sums them all.
+    public Result solve(CSPPuzzleSolver puzzle, SearchLimits limits) throws InterruptedException {
+        long start = System.nanoTime();
+        AtomicBoolean cancelled = new AtomicBoolean();
+        try {
+            CompletionService<Integer> race = new ExecutorCompletionService<>(executor);
+            List<CSPPuzzleSolver> entrants = new ArrayList<>();
+            List<SolveStatus> outcomes = Collections.synchronizedList(new ArrayList<>());
+            for (int i = 0; i < configurations.size(); i++) {
+                CSPPuzzleSolver entrant = puzzle.copy();
+                entrant.setCancelled(cancelled);
+                entrants.add(entrant);
+                outcomes.add(null);
+                int id = i;
+                race.submit(() -> {
+                    outcomes.set(id, entrant.solvePuzzle(configurations.get(id), limits));
+                    return id;
+                });
+            }
+
+            SolveStatus stopped = null; // set once a limit stopped some entrant
+            Throwable error = null;
+            for (int remaining = entrants.size(); remaining > 0; remaining--) {
+                int id;
+                try {
+                    id = race.take().get();
+                } catch (ExecutionException e) {
+                    // A failing configuration just drops out of the race
+                    if (error == null) error = e.getCause();
+                    continue;
+                }
+                SolveStatus status = outcomes.get(id);
+                if (status == SolveStatus.TIMEOUT || status == SolveStatus.CANCELLED) {
+                    if (stopped != SolveStatus.CANCELLED) stopped = status;
+                    continue;
+                }
+                // A solver that was not stopped either solved the puzzle or
+                // proved it unsolvable; both settle the race
+                if (cancelled.compareAndSet(false, true)) {
+                    wins.incrementAndGet(id);
+                    CSPPuzzleSolver winner = entrants.get(id);
+                    puzzle.setSolution(status == SolveStatus.SOLVED ? winner.snapshot()[1] : null);
+                    puzzle.setStats(winner.getStats());
+                    return new Result(status, id, configurations.get(id), winner.getNodeCount(),
+                            System.nanoTime() - start, null);
+                }
+            }
+            // Nothing settled the race, which proves nothing about the puzzle
+            return new Result(stopped != null ? stopped : SolveStatus.ERROR, -1, null, 0,
+                    System.nanoTime() - start, stopped != null ? null : error);
+        } finally {
+            // Losers stop at their next node; nobody waits for them
+            cancelled.set(true);
+        }
+    }
+
+    public List<SolverOptions> getConfigurations() {
+        return Collections.unmodifiableList(configurations);
+    }
+
+    // Races won by each configuration since this portfolio was created
+    public long getWins(int configuration) {
+        return wins.get(configuration);
+    }
+
+    // Stops the pool; losers of the last race are interrupted and end as
+    // CANCELLED. The portfolio accepts no more solves afterwards.
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    // One virtual thread per entrant where the runtime has them (Java 21+),
+    // otherwise pooled daemon platform threads
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "portfolio-solver");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
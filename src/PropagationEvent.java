@@ -0,0 +1,22 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// JFR event for one root propagation phase of a solve: AC-3, group
+// filtering, AllDifferent filtering or the combined fixpoint
+@Name("csp.Propagation")
+@Label("Root Propagation Phase")
+@Category("CSP Puzzle Solver")
+@Description("A propagation phase run before the search starts")
+class PropagationEvent extends Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("Consistent")
+    boolean consistent;
+
+    @Label("Values Removed")
+    int valuesRemoved;
+}
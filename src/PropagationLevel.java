@@ -0,0 +1,12 @@
+// How much propagation the search runs after each assignment. The root
+// always runs AC-3 and group filtering to a fixpoint.
+public enum PropagationLevel {
+    // Remove the assigned value from the row and column peers
+    FORWARD_CHECK,
+    // Forward checking plus group filtering of every cell it narrowed, so
+    // e.g. the partner of a '-' or '/' pair can drop to a single value
+    CAGE_FORWARD_CHECK,
+    // Maintain arc consistency: incremental AC-3 and group filtering from
+    // every narrowed cell until nothing changes
+    MAC
+}
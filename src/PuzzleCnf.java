@@ -0,0 +1,238 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// CNF encoding of a puzzle, for the SAT engine and, written as DIMACS, for
+// offline solvers. Variable cell * N + value (counting from 1, as DIMACS
+// does) is true when the cell holds the value. Every cell holds exactly one
+// value of its domain, and every value appears exactly once in each row and
+// column: one at-least-one clause plus pairwise at-most-one clauses each.
+// A group gets one selector variable per allowed tuple, from the same
+// tables CagePropagator filters with: some selector holds, a selector
+// implies its values, and each value of a member implies one of the
+// selectors that use it, so unit propagation alone keeps the group arc
+// consistent. A group too large to tabulate gets one variable per partial
+// sum or product its first k members can reach instead (see
+// CagePropagator.PartialSums), and each step from one to the next is a
+// clause. Values removed by root propagation are left out, which makes
+// the encoding as tight as the CSP search's starting point.
+//
+// Usage: java PuzzleCnf <puzzle-file> [out.cnf]
+public class PuzzleCnf {
+    private final int N;
+    private int variables;
+    private final List<int[]> clauses = new ArrayList<>();
+
+    // From the domains left by root propagation
+    PuzzleCnf(ConstraintIndex index, DomainStore domains) {
+        this.N = index.N;
+        this.variables = N * N * N;
+        encodeCells(domains);
+        for (int i = 0; i < N; i++) {
+            encodeLine(index.scope[index.rowConstraint(i)], domains);
+            encodeLine(index.scope[index.colConstraint(i)], domains);
+        }
+        for (int g = 0; g < index.cageCells.length; g++) {
+            encodeCage(index, g, domains);
+        }
+    }
+
+    // A puzzle already refuted by root propagation: no variables, one
+    // empty clause
+    private PuzzleCnf(int N) {
+        this.N = N;
+        clauses.add(new int[0]);
+    }
+
+    static PuzzleCnf unsatisfiable(int N) {
+        return new PuzzleCnf(N);
+    }
+
+    int variable(int cell, int value) {
+        return cell * N + value;
+    }
+
+    int variableCount() {
+        return variables;
+    }
+
+    List<int[]> clauses() {
+        return clauses;
+    }
+
+    // Exactly one value per cell; values outside the domain are false
+    private void encodeCells(DomainStore domains) {
+        int[] literals = new int[N];
+        for (int c = 0; c < N * N; c++) {
+            int mask = domains.mask(c);
+            int count = 0;
+            for (int v = 1; v <= N; v++) {
+                if ((mask & DomainStore.bit(v)) != 0) {
+                    literals[count++] = variable(c, v);
+                } else {
+                    clauses.add(new int[] {-variable(c, v)});
+                }
+            }
+            exactlyOne(literals, count);
+        }
+    }
+
+    // Exactly one cell of a row or column per value, among the cells that
+    // can still take it
+    private void encodeLine(int[] cells, DomainStore domains) {
+        int[] literals = new int[cells.length];
+        for (int v = 1; v <= N; v++) {
+            int count = 0;
+            for (int c : cells) {
+                if (domains.contains(c, v)) literals[count++] = variable(c, v);
+            }
+            exactlyOne(literals, count);
+        }
+    }
+
+    private void exactlyOne(int[] literals, int count) {
+        clauses.add(Arrays.copyOf(literals, count));
+        for (int a = 0; a < count; a++) {
+            for (int b = a + 1; b < count; b++) {
+                clauses.add(new int[] {-literals[a], -literals[b]});
+            }
+        }
+    }
+
+    private void encodeCage(ConstraintIndex index, int cage, DomainStore domains) {
+        int[] table = CagePropagator.lookup(index, cage);
+        if (table == null) {
+            CagePropagator.PartialSums sums = CagePropagator.PartialSums.of(index, cage);
+            if (sums != null) encodeSums(index.cageCells[cage], sums, domains);
+            return;
+        }
+        int[] members = index.cageCells[cage];
+        int arity = members.length;
+
+        // Tuples still allowed by the root domains, one selector each
+        int[] live = new int[table.length / Math.max(arity, 1)];
+        int liveCount = 0;
+        for (int t = 0; t < table.length; t += arity) {
+            boolean allowed = true;
+            for (int j = 0; j < arity && allowed; j++) {
+                allowed = (domains.mask(members[j]) & table[t + j]) != 0;
+            }
+            if (allowed) live[liveCount++] = t;
+        }
+        int firstSelector = variables + 1;
+        variables += liveCount;
+
+        int[] some = new int[liveCount];
+        for (int k = 0; k < liveCount; k++) {
+            some[k] = firstSelector + k;
+            for (int j = 0; j < arity; j++) {
+                int value = DomainStore.lowestValue(table[live[k] + j]);
+                clauses.add(new int[] {-(firstSelector + k), variable(members[j], value)});
+            }
+        }
+        clauses.add(some);
+
+        // Support: member j = v needs a selected tuple with v at j
+        int[] support = new int[liveCount + 1];
+        for (int j = 0; j < arity; j++) {
+            for (int m = domains.mask(members[j]); m != 0; m &= m - 1) {
+                int value = DomainStore.lowestValue(m);
+                int bit = DomainStore.bit(value);
+                int count = 0;
+                support[count++] = -variable(members[j], value);
+                for (int k = 0; k < liveCount; k++) {
+                    if (table[live[k] + j] == bit) support[count++] = firstSelector + k;
+                }
+                clauses.add(Arrays.copyOf(support, count));
+            }
+        }
+    }
+
+    // Variable (k, s) holds when the first k members reach state s: the
+    // start state holds, and a state with the next member's value implies
+    // the state they lead to. A step past the target, or to anything but
+    // the target after the last member, is ruled out. Unit propagation
+    // follows the actual sum, so only the forward direction is needed.
+    private void encodeSums(int[] members, CagePropagator.PartialSums sums, DomainStore domains) {
+        int arity = members.length;
+        if (!sums.supports(members, domains, new int[arity])) {
+            clauses.add(new int[0]);
+            return;
+        }
+        // (k, s) -> variable, for the states reachable through the domains
+        int[][] state = new int[arity][sums.step.length];
+        for (int k = 0; k < arity; k++) {
+            for (int s = 0; s < sums.step.length; s++) {
+                if (sums.reach[k][s]) state[k][s] = ++variables;
+            }
+        }
+        clauses.add(new int[] {state[0][sums.start]});
+        for (int k = 0; k < arity; k++) {
+            int member = members[k];
+            for (int s = 0; s < sums.step.length; s++) {
+                if (state[k][s] == 0) continue;
+                for (int m = domains.mask(member); m != 0; m &= m - 1) {
+                    int value = DomainStore.lowestValue(m);
+                    int next = sums.step[s][value];
+                    if (k + 1 == arity) {
+                        if (next != sums.accept) {
+                            clauses.add(new int[] {-state[k][s], -variable(member, value)});
+                        }
+                    } else if (next < 0) {
+                        clauses.add(new int[] {-state[k][s], -variable(member, value)});
+                    } else {
+                        clauses.add(new int[] {-state[k][s], -variable(member, value), state[k + 1][next]});
+                    }
+                }
+            }
+        }
+    }
+
+    // DIMACS CNF, with comments naming the variables
+    void writeDimacs(Writer out) throws IOException {
+        out.write("c " + N + "x" + N + " puzzle: variable cell * " + N + " + value is true when the cell"
+                + " (row * " + N + " + col) holds the value\n");
+        out.write("c variables above " + N * N * N + " select allowed group tuples or track group sums\n");
+        out.write("p cnf " + variables + " " + clauses.size() + "\n");
+        StringBuilder line = new StringBuilder();
+        for (int[] clause : clauses) {
+            line.setLength(0);
+            for (int literal : clause) {
+                line.append(literal).append(' ');
+            }
+            line.append("0\n");
+            out.write(line.toString());
+        }
+        out.flush();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: java PuzzleCnf <puzzle-file> [out.cnf]");
+            System.exit(2);
+        }
+        CSPPuzzleSolver solver;
+        try (PuzzleParser parser = new PuzzleParser(Files.newBufferedReader(Paths.get(args[0]),
+                StandardCharsets.UTF_8))) {
+            solver = parser.next();
+        }
+        if (solver == null) {
+            System.err.println("No puzzle in " + args[0]);
+            System.exit(1);
+        }
+        Path outFile = args.length > 1 ? Paths.get(args[1]) : null;
+        try (Writer out = outFile == null
+                ? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+                : Files.newBufferedWriter(outFile, StandardCharsets.UTF_8)) {
+            solver.exportDimacs(out);
+        }
+    }
+}
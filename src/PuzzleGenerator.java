@@ -0,0 +1,540 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Generates uniquely solvable puzzles in the PuzzleData / puzzles/*.txt
+// format. Each puzzle starts from a random Latin square filled in by the
+// solver itself, which is cut into connected groups with operators that
+// hold for the square. Uniqueness is checked with countSolutions(2); while
+// a second solution exists, a group it passes through is retyped or merged
+// with a neighbour so that it rules that solution out, and failing that
+// the differing cell becomes a given. Difficulty is the node count of a
+// default solvePuzzle() run, and layouts are redrawn until it falls into
+// the requested range.
+//
+// Puzzle i of a generator depends only on (N, seed, i) and the settings,
+// so output is reproducible whatever the thread count.
+//
+// Usage: java PuzzleGenerator N COUNT [--seed S] [--threads T]
+//            [--min-nodes A] [--max-nodes B] [--max-cage K] [--out DIR]
+public class PuzzleGenerator {
+    private final int N;
+    private final long seed;
+    private int maxCageSize = 4;
+    private long minNodes = 0;
+    private long maxNodes = Long.MAX_VALUE;
+    private int maxAttempts = 50;
+    private long nodeBudget = 50_000;
+
+    public PuzzleGenerator(int N, long seed) {
+        if (N < 2 || N > DomainStore.MAX_N) {
+            throw new IllegalArgumentException("Grid size must be between 2 and " + DomainStore.MAX_N + ": " + N);
+        }
+        this.N = N;
+        this.seed = seed;
+    }
+
+    // Largest group drawn for a fresh layout; merges may go one cell over
+    public PuzzleGenerator maxCageSize(int size) {
+        if (size < 2) {
+            throw new IllegalArgumentException("Groups need at least 2 cells: " + size);
+        }
+        this.maxCageSize = size;
+        return this;
+    }
+
+    // Accepted difficulty, in search nodes of a default solve
+    public PuzzleGenerator nodeRange(long min, long max) {
+        if (min < 0 || max < min) {
+            throw new IllegalArgumentException("Bad node range: " + min + ".." + max);
+        }
+        this.minNodes = min;
+        this.maxNodes = max;
+        return this;
+    }
+
+    // Search nodes allowed for each uniqueness check or difficulty solve;
+    // layouts that need more are dropped as too hard to verify
+    public PuzzleGenerator nodeBudget(long nodes) {
+        this.nodeBudget = Math.max(1, nodes);
+        return this;
+    }
+
+    // Layouts tried per puzzle before settling for the closest difficulty
+    public PuzzleGenerator maxAttempts(int attempts) {
+        this.maxAttempts = Math.max(1, attempts);
+        return this;
+    }
+
+    public static class Puzzle {
+        public final int index;
+        public final List<String> lines; // size line, groups, then givens
+        public final long nodes;         // difficulty
+        public final boolean inRange;    // nodes within the requested range
+
+        Puzzle(int index, List<String> lines, long nodes, boolean inRange) {
+            this.index = index;
+            this.lines = Collections.unmodifiableList(lines);
+            this.nodes = nodes;
+            this.inRange = inRange;
+        }
+
+        @Override
+        public String toString() {
+            return String.join("\n", lines);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            usage();
+        }
+        int n = Integer.parseInt(args[0]);
+        int count = Integer.parseInt(args[1]);
+        long seed = System.nanoTime();
+        int threads = Runtime.getRuntime().availableProcessors();
+        long min = 0, max = Long.MAX_VALUE;
+        int maxCage = 4;
+        Path outDir = null;
+        for (int i = 2; i < args.length; i += 2) {
+            // Every option takes a value
+            if (i + 1 == args.length) usage();
+            switch (args[i]) {
+                case "--seed": seed = Long.parseLong(args[i + 1]); break;
+                case "--threads": threads = Integer.parseInt(args[i + 1]); break;
+                case "--min-nodes": min = Long.parseLong(args[i + 1]); break;
+                case "--max-nodes": max = Long.parseLong(args[i + 1]); break;
+                case "--max-cage": maxCage = Integer.parseInt(args[i + 1]); break;
+                case "--out": outDir = Paths.get(args[i + 1]); break;
+                default: usage();
+            }
+        }
+
+        long start = System.nanoTime();
+        PuzzleGenerator generator = new PuzzleGenerator(n, seed).maxCageSize(maxCage).nodeRange(min, max);
+        List<Puzzle> puzzles = generator.generate(count, threads);
+        if (outDir != null) {
+            Files.createDirectories(outDir);
+        }
+        int outOfRange = 0;
+        for (Puzzle puzzle : puzzles) {
+            if (!puzzle.inRange) outOfRange++;
+            if (outDir != null) {
+                Path file = outDir.resolve(String.format("generated%05d.txt", puzzle.index));
+                Files.write(file, puzzle.toString().getBytes(StandardCharsets.UTF_8));
+            } else {
+                System.out.println(puzzle);
+            }
+        }
+        System.err.printf("%d puzzles (%d outside the node range), seed %d, in %.1f ms%n",
+                puzzles.size(), outOfRange, seed, (System.nanoTime() - start) / 1e6);
+    }
+
+    private static void usage() {
+        System.err.println("Usage: java PuzzleGenerator N COUNT [--seed S] [--threads T]"
+                + " [--min-nodes A] [--max-nodes B] [--max-cage K] [--out DIR]");
+        System.exit(2);
+    }
+
+    // Puzzles 0 .. count - 1, generated on a pool of worker threads
+    public List<Puzzle> generate(int count, int threads) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Puzzle>> futures = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int index = i;
+                futures.add(pool.submit(() -> generate(index)));
+            }
+            List<Puzzle> puzzles = new ArrayList<>(count);
+            for (Future<Puzzle> future : futures) {
+                try {
+                    puzzles.add(future.get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Puzzle generation failed", e.getCause());
+                }
+            }
+            return puzzles;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Puzzle number index of this generator's sequence
+    public Puzzle generate(int index) {
+        Random random = new Random(seed ^ (index + 1) * 0x9E3779B97F4A7C15L);
+        int cageLimit = maxCageSize;
+        Puzzle closest = null;
+        long closestDistance = Long.MAX_VALUE;
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            Layout layout = new Layout(N, latinSquare(random.nextLong()), cageLimit, random, nodeBudget);
+            long nodes = measure(layout);
+            if (nodes < 0) {
+                // Too costly to verify; try smaller groups
+                cageLimit = Math.max(2, cageLimit - 1);
+                continue;
+            }
+
+            long distance = nodes < minNodes ? minNodes - nodes : nodes > maxNodes ? nodes - maxNodes : 0;
+            if (distance == 0) {
+                return new Puzzle(index, layout.lines(), nodes, true);
+            }
+            if (distance < closestDistance) {
+                closestDistance = distance;
+                closest = new Puzzle(index, layout.lines(), nodes, false);
+            }
+            // Bigger groups carry less information per cell
+            cageLimit = nodes < minNodes
+                    ? Math.min(cageLimit + 1, Math.min(N, maxCageSize + 1)) : Math.max(2, cageLimit - 1);
+        }
+        if (closest == null) {
+            throw new IllegalStateException("No layout within the node budget after " + maxAttempts + " attempts");
+        }
+        return closest;
+    }
+
+    // Makes the layout unique and returns its difficulty, or -1 if either
+    // step ran out of nodes
+    private long measure(Layout layout) {
+        if (!layout.makeUnique()) {
+            return -1;
+        }
+        CSPPuzzleSolver check = layout.toSolver();
+        SolveStatus status = check.solvePuzzle(new SolverOptions(), budget(nodeBudget));
+        if (status == SolveStatus.TIMEOUT) {
+            return -1;
+        }
+        if (status != SolveStatus.SOLVED) {
+            throw new IllegalStateException("Generated puzzle has no solution");
+        }
+        return check.getNodeCount();
+    }
+
+    private static SearchLimits budget(long nodeBudget) {
+        return new SearchLimits().maxNodes(nodeBudget);
+    }
+
+    // A Latin square found by the solver on an empty grid with random value order
+    private int[] latinSquare(long squareSeed) {
+        CSPPuzzleSolver solver = new CSPPuzzleSolver(N);
+        solver.solvePuzzle(new SolverOptions()
+                .allDifferentMode(AllDifferentMode.MATCHING)
+                .valueHeuristic(ValueHeuristic.RANDOM)
+                .seed(squareSeed));
+        int[] square = new int[N * N];
+        for (int c = 0; c < square.length; c++) {
+            square[c] = solver.getValueAt(c / N, c % N);
+        }
+        return square;
+    }
+
+    private static class Cage {
+        final List<Integer> cells = new ArrayList<>(); // cell indexes
+        char operator;
+        int target;
+    }
+
+    // A partition of the square into groups. Single-cell groups are givens.
+    private static class Layout {
+        final int N;
+        final int[] square;
+        final int cageLimit;
+        final Random random;
+        final long nodeBudget;
+        final List<Cage> cages = new ArrayList<>();
+        final Cage[] cageOf;
+
+        Layout(int N, int[] square, int cageLimit, Random random, long nodeBudget) {
+            this.N = N;
+            this.square = square;
+            this.cageLimit = cageLimit;
+            this.random = random;
+            this.nodeBudget = nodeBudget;
+            this.cageOf = new Cage[N * N];
+
+            // Grow each group from a random free cell through free neighbours
+            List<Integer> order = new ArrayList<>();
+            for (int c = 0; c < N * N; c++) {
+                order.add(c);
+            }
+            Collections.shuffle(order, random);
+            List<Integer> frontier = new ArrayList<>();
+            for (int start : order) {
+                if (cageOf[start] != null) continue;
+                Cage cage = new Cage();
+                add(cage, start);
+                int size = 2 + random.nextInt(cageLimit - 1);
+                while (cage.cells.size() < size) {
+                    frontier.clear();
+                    for (int c : cage.cells) {
+                        for (int neighbour : neighbours(c)) {
+                            if (neighbour >= 0 && cageOf[neighbour] == null) frontier.add(neighbour);
+                        }
+                    }
+                    if (frontier.isEmpty()) break;
+                    add(cage, frontier.get(random.nextInt(frontier.size())));
+                }
+                cages.add(cage);
+                pickOperator(cage);
+            }
+        }
+
+        private void add(Cage cage, int cell) {
+            cage.cells.add(cell);
+            cageOf[cell] = cage;
+        }
+
+        // Orthogonal neighbours, -1 outside the grid
+        private int[] neighbours(int c) {
+            int row = c / N, col = c % N;
+            return new int[] {
+                row > 0 ? c - N : -1,
+                row < N - 1 ? c + N : -1,
+                col > 0 ? c - 1 : -1,
+                col < N - 1 ? c + 1 : -1
+            };
+        }
+
+        private void pickOperator(Cage cage) {
+            List<Character> operators = operatorsFor(cage.cells);
+            setOperator(cage, operators.get(random.nextInt(operators.size())));
+        }
+
+        private void setOperator(Cage cage, char operator) {
+            cage.operator = operator;
+            cage.target = target(cage.cells, operator, square);
+        }
+
+        // Operators whose target is well defined for the square's values;
+        // '-' and '/' only relate two cells, as in the solver
+        private List<Character> operatorsFor(List<Integer> cells) {
+            List<Character> operators = new ArrayList<>();
+            if (cells.size() == 1) {
+                operators.add('=');
+                return operators;
+            }
+            operators.add('+');
+            if (product(cells, square) <= 100_000_000L) operators.add('*');
+            if (cells.size() == 2) {
+                operators.add('-');
+                int a = square[cells.get(0)], b = square[cells.get(1)];
+                if (Math.max(a, b) % Math.min(a, b) == 0) operators.add('/');
+            }
+            return operators;
+        }
+
+        // Retypes, merges or splits groups until countSolutions(2) finds only
+        // the square; false if a check ran out of nodes
+        boolean makeUnique() {
+            // After this many rounds only givens are added, which always terminates
+            int freeRounds = 4 * N * N;
+            for (int round = 0; ; round++) {
+                CSPPuzzleSolver solver = toSolver();
+                SolutionCount count = solver.countSolutions(2, new SolverOptions(), budget(nodeBudget));
+                if (count.getStatus() == SolveStatus.TIMEOUT) return false;
+                if (count.getCount() == 0) {
+                    throw new IllegalStateException("Generated puzzle lost its own solution");
+                }
+                if (count.isUnique()) return true;
+                int[] other = otherSolution(count);
+
+                List<Integer> differing = new ArrayList<>();
+                for (int c = 0; c < square.length; c++) {
+                    if (other[c] != square[c]) differing.add(c);
+                }
+                int cell = differing.get(random.nextInt(differing.size()));
+                if (round < freeRounds && (retype(cageOf[cell], other) || merge(cageOf[cell], other))) {
+                    continue;
+                }
+                makeGiven(cell);
+            }
+        }
+
+        private int[] otherSolution(SolutionCount count) {
+            for (int[][] solution : count.getSolutions()) {
+                int[] flat = new int[N * N];
+                boolean same = true;
+                for (int c = 0; c < flat.length; c++) {
+                    flat[c] = solution[c / N][c % N];
+                    same &= flat[c] == square[c];
+                }
+                if (!same) return flat;
+            }
+            throw new IllegalStateException("No second solution to rule out");
+        }
+
+        // Picks an operator that holds for the square but not for other
+        private boolean retype(Cage cage, int[] other) {
+            List<Character> operators = operatorsFor(cage.cells);
+            Collections.shuffle(operators, random);
+            for (char operator : operators) {
+                if (operator == '=') continue;
+                if (!satisfies(cage.cells, operator, target(cage.cells, operator, square), other)) {
+                    setOperator(cage, operator);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // Joins the group with a neighbouring one when some operator of the
+        // merged group rules other out
+        private boolean merge(Cage cage, int[] other) {
+            List<Cage> candidates = new ArrayList<>();
+            for (int c : cage.cells) {
+                for (int neighbour : neighbours(c)) {
+                    if (neighbour < 0) continue;
+                    Cage next = cageOf[neighbour];
+                    if (next != cage && !candidates.contains(next)
+                            && cage.cells.size() + next.cells.size() <= cageLimit + 1) {
+                        candidates.add(next);
+                    }
+                }
+            }
+            Collections.shuffle(candidates, random);
+            for (Cage next : candidates) {
+                List<Integer> merged = new ArrayList<>(cage.cells);
+                merged.addAll(next.cells);
+                List<Character> operators = operatorsFor(merged);
+                Collections.shuffle(operators, random);
+                for (char operator : operators) {
+                    if (!satisfies(merged, operator, target(merged, operator, square), other)) {
+                        for (int c : next.cells) {
+                            add(cage, c);
+                        }
+                        cages.remove(next);
+                        setOperator(cage, operator);
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        // Splits the cell off as a given; the rest of its group may fall
+        // apart, and each connected piece becomes a group of its own
+        private void makeGiven(int cell) {
+            Cage cage = cageOf[cell];
+            if (cage.cells.size() == 1) {
+                throw new IllegalStateException("Given cell " + cell + " does not match the solution");
+            }
+            cages.remove(cage);
+            Cage given = new Cage();
+            add(given, cell);
+            setOperator(given, '=');
+            cages.add(given);
+
+            List<Integer> rest = new ArrayList<>(cage.cells);
+            rest.remove(Integer.valueOf(cell));
+            for (int c : rest) {
+                cageOf[c] = null;
+            }
+            for (int start : rest) {
+                if (cageOf[start] != null) continue;
+                Cage piece = new Cage();
+                add(piece, start);
+                for (int k = 0; k < piece.cells.size(); k++) {
+                    for (int neighbour : neighbours(piece.cells.get(k))) {
+                        if (neighbour >= 0 && cageOf[neighbour] == null && rest.contains(neighbour)) {
+                            add(piece, neighbour);
+                        }
+                    }
+                }
+                cages.add(piece);
+                pickOperator(piece);
+            }
+        }
+
+        CSPPuzzleSolver toSolver() {
+            CSPPuzzleSolver solver = new CSPPuzzleSolver(N);
+            for (Cage cage : cages) {
+                if (cage.cells.size() == 1) {
+                    int c = cage.cells.get(0);
+                    solver.addGiven(c / N, c % N, square[c]);
+                } else {
+                    List<Cell> cells = new ArrayList<>();
+                    for (int c : cage.cells) {
+                        cells.add(new Cell(c / N, c % N));
+                    }
+                    solver.addGroup(cells, cage.operator, cage.target);
+                }
+            }
+            return solver;
+        }
+
+        // Groups in order of their first cell, then the givens
+        List<String> lines() {
+            List<Cage> sorted = new ArrayList<>(cages);
+            for (Cage cage : sorted) {
+                Collections.sort(cage.cells);
+            }
+            sorted.sort((a, b) -> Integer.compare(a.cells.get(0), b.cells.get(0)));
+
+            List<String> lines = new ArrayList<>();
+            lines.add(String.valueOf(N));
+            StringBuilder sb = new StringBuilder();
+            for (Cage cage : sorted) {
+                if (cage.cells.size() == 1) continue;
+                sb.setLength(0);
+                for (int c : cage.cells) {
+                    if (sb.length() > 0) sb.append(';');
+                    sb.append(c / N).append(',').append(c % N);
+                }
+                sb.append("->").append(cage.operator).append(',').append(cage.target);
+                lines.add(sb.toString());
+            }
+            for (Cage cage : sorted) {
+                if (cage.cells.size() != 1) continue;
+                int c = cage.cells.get(0);
+                lines.add("#" + c / N + "," + c % N + "->" + square[c]);
+            }
+            return lines;
+        }
+    }
+
+    private static long product(List<Integer> cells, int[] values) {
+        long product = 1;
+        for (int c : cells) {
+            product *= values[c];
+        }
+        return product;
+    }
+
+    private static int target(List<Integer> cells, char operator, int[] values) {
+        switch (operator) {
+            case '+':
+                int sum = 0;
+                for (int c : cells) {
+                    sum += values[c];
+                }
+                return sum;
+            case '*':
+                return (int) product(cells, values);
+            case '-':
+                return Math.abs(values[cells.get(0)] - values[cells.get(1)]);
+            case '/':
+                int a = values[cells.get(0)], b = values[cells.get(1)];
+                return Math.max(a, b) / Math.min(a, b);
+            default:
+                return values[cells.get(0)];
+        }
+    }
+
+    // Same rules as the check*Constraint methods of the solver
+    private static boolean satisfies(List<Integer> cells, char operator, int target, int[] values) {
+        if (operator == '/') {
+            int a = values[cells.get(0)], b = values[cells.get(1)];
+            return Math.max(a, b) % Math.min(a, b) == 0 && Math.max(a, b) / Math.min(a, b) == target;
+        }
+        return target(cells, operator, values) == target;
+    }
+}
@@ -0,0 +1,180 @@
+import javax.swing.*;
+import java.awt.*;
+import java.util.Arrays;
+import java.util.List;
+
+// Custom-painted puzzle grid. Cage colours, cage labels and the cage walls
+// are worked out once per puzzle; after that setValues() repaints only the
+// cells whose digit changed, and painting skips every cell outside the
+// clip. Cells shrink to fit the component, so large grids need no
+// components of their own.
+public class PuzzleGridView extends JComponent {
+    private static final long serialVersionUID = 1L;
+
+    private static final int PREFERRED_CELL_SIZE = 60;
+    private static final int MIN_CELL_SIZE = 24;
+    private static final int MAX_PREFERRED_GRID = 960; // preferred width of the cells at large N
+    private static final int MARGIN = 10;
+    private static final int WALL = 3;                 // width of a line between two cages
+    private static final Color GIVEN_COLOR = new Color(0, 0, 160);
+    private static final Color GRID_LINE = new Color(150, 150, 150);
+
+    private final int N;
+    private final Color[] cellColor;   // by cell index
+    private final String[] cageLabel;  // "op target" on the first cell of each group, else null
+    private final boolean[] wallRight; // a different cage (or none) lies to the right
+    private final boolean[] wallBelow; // a different cage (or none) lies below
+    private final int[] givens;
+    private final int[] values;        // digits drawn for non-given cells
+
+    // Fonts for the current cell size, rebuilt when it changes
+    private int fontCellSize = -1;
+    private Font labelFont;
+    private Font valueFont;
+
+    // groupColors.get(g) colours group g of the puzzle
+    public PuzzleGridView(CSPPuzzleSolver puzzle, List<Color> groupColors) {
+        this.N = puzzle.getN();
+        this.cellColor = new Color[N * N];
+        this.cageLabel = new String[N * N];
+        this.wallRight = new boolean[N * N];
+        this.wallBelow = new boolean[N * N];
+        this.givens = new int[N * N];
+        this.values = new int[N * N];
+
+        int[] cageOf = new int[N * N];
+        Arrays.fill(cageOf, -1);
+        Arrays.fill(cellColor, Color.WHITE);
+        List<Group> groups = puzzle.getGroups();
+        for (int g = 0; g < groups.size(); g++) {
+            Group group = groups.get(g);
+            for (Cell cell : group.cells) {
+                cageOf[cell.row * N + cell.col] = g;
+                cellColor[cell.row * N + cell.col] = groupColors.get(g);
+            }
+            Cell first = group.cells.get(0);
+            cageLabel[first.row * N + first.col] = group.operator + " " + group.target;
+        }
+        for (int c = 0; c < N * N; c++) {
+            int row = c / N, col = c % N;
+            wallRight[c] = col == N - 1 || cageOf[c] < 0 || cageOf[c] != cageOf[c + 1];
+            wallBelow[c] = row == N - 1 || cageOf[c] < 0 || cageOf[c] != cageOf[c + N];
+            givens[c] = puzzle.getGivenAt(row, col);
+        }
+
+        int cell = Math.max(MIN_CELL_SIZE, Math.min(PREFERRED_CELL_SIZE, MAX_PREFERRED_GRID / N));
+        setPreferredSize(new Dimension(N * cell + 2 * MARGIN, N * cell + 2 * MARGIN));
+        setOpaque(true);
+        setBackground(UIManager.getColor("Panel.background"));
+    }
+
+    // Shows the given digits by cell index (0 for empty; null empties every
+    // cell) and repaints the cells that changed. Call on the EDT.
+    public void setValues(int[] newValues) {
+        int size = cellSize();
+        for (int c = 0; c < values.length; c++) {
+            int value = newValues == null ? 0 : newValues[c];
+            if (values[c] != value) {
+                values[c] = value;
+                int x = originX(size) + (c % N) * size;
+                int y = originY(size) + (c / N) * size;
+                repaint(x, y, size, size);
+            }
+        }
+    }
+
+    @Override
+    protected void paintComponent(Graphics graphics) {
+        Graphics2D g = (Graphics2D) graphics.create();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+            Rectangle clip = g.getClipBounds();
+            if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+            g.setColor(getBackground());
+            g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+            int size = cellSize();
+            if (size <= 0) return;
+            int x0 = originX(size), y0 = originY(size);
+            updateFonts(size);
+
+            // Cells under the clip, plus one on each side for the walls
+            // that straddle a cell edge
+            int col0 = Math.max(0, Math.floorDiv(clip.x - x0, size) - 1);
+            int col1 = Math.min(N - 1, Math.floorDiv(clip.x + clip.width - x0, size) + 1);
+            int row0 = Math.max(0, Math.floorDiv(clip.y - y0, size) - 1);
+            int row1 = Math.min(N - 1, Math.floorDiv(clip.y + clip.height - y0, size) + 1);
+            if (col0 > col1 || row0 > row1) return;
+
+            // Backgrounds, thin lines, cage walls and text in separate passes
+            // so a neighbour's fill never covers a line
+            for (int row = row0; row <= row1; row++) {
+                for (int col = col0; col <= col1; col++) {
+                    g.setColor(cellColor[row * N + col]);
+                    g.fillRect(x0 + col * size, y0 + row * size, size, size);
+                }
+            }
+            g.setColor(GRID_LINE);
+            for (int row = row0; row <= row1; row++) {
+                for (int col = col0; col <= col1; col++) {
+                    g.drawRect(x0 + col * size, y0 + row * size, size, size);
+                }
+            }
+            g.setColor(Color.BLACK);
+            for (int row = row0; row <= row1; row++) {
+                for (int col = col0; col <= col1; col++) {
+                    int c = row * N + col;
+                    int x = x0 + col * size, y = y0 + row * size;
+                    if (wallRight[c]) g.fillRect(x + size - WALL / 2, y - WALL / 2, WALL, size + WALL);
+                    if (wallBelow[c]) g.fillRect(x - WALL / 2, y + size - WALL / 2, size + WALL, WALL);
+                    if (col == 0) g.fillRect(x - WALL / 2, y - WALL / 2, WALL, size + WALL);
+                    if (row == 0) g.fillRect(x - WALL / 2, y - WALL / 2, size + WALL, WALL);
+                }
+            }
+            for (int row = row0; row <= row1; row++) {
+                for (int col = col0; col <= col1; col++) {
+                    paintText(g, row * N + col, x0 + col * size, y0 + row * size, size);
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+    }
+
+    private void paintText(Graphics2D g, int c, int x, int y, int size) {
+        if (cageLabel[c] != null) {
+            g.setFont(labelFont);
+            g.setColor(Color.BLACK);
+            g.drawString(cageLabel[c], x + WALL + 2, y + WALL + g.getFontMetrics().getAscent());
+        }
+        int value = givens[c] != 0 ? givens[c] : values[c];
+        if (value == 0) return;
+        String text = String.valueOf(value);
+        g.setFont(valueFont);
+        g.setColor(givens[c] != 0 ? GIVEN_COLOR : Color.BLACK);
+        FontMetrics metrics = g.getFontMetrics();
+        int textX = x + (size - metrics.stringWidth(text)) / 2;
+        int textY = y + (size - metrics.getHeight()) / 2 + metrics.getAscent() + size / 10;
+        g.drawString(text, textX, textY);
+    }
+
+    private void updateFonts(int size) {
+        if (size == fontCellSize) return;
+        fontCellSize = size;
+        labelFont = new Font("Arial", Font.BOLD, Math.max(8, size / 5));
+        valueFont = new Font("Arial", Font.BOLD, Math.max(10, size / 3));
+    }
+
+    private int cellSize() {
+        return Math.min(getWidth() - 2 * MARGIN, getHeight() - 2 * MARGIN) / N;
+    }
+
+    // The grid is centred in the component
+    private int originX(int size) {
+        return (getWidth() - N * size) / 2;
+    }
+
+    private int originY(int size) {
+        return (getHeight() - N * size) / 2;
+    }
+}
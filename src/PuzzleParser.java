@@ -0,0 +1,322 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Single-pass reader for the puzzle text format:
+//
+//   N                       grid size
+//   r,c;r,c;...->op,target  one group per line, op is + - * or /
+//   #r,c->v                 given cell
+//
+// Characters are pulled straight from a buffered Reader and numbers are
+// accumulated digit by digit, so no line strings or split arrays are
+// created. A stream may hold several puzzles back to back, each starting
+// at its bare size line; next() returns them one at a time. Spaces and
+// tabs between tokens and blank lines are ignored.
+public class PuzzleParser implements Closeable {
+    private final Reader in;
+    private final char[] buffer;
+    private int position, limit;
+
+    // Position of the next character, 1-based
+    private int line = 1, column = 1;
+    // Position of the last number read, for error messages
+    private int tokenLine, tokenColumn;
+
+    // Size line of the following puzzle, already consumed while looking
+    // for the end of the current one; -1 if none
+    private int pendingSize = -1;
+    private int pendingLine, pendingColumn;
+
+    // Set while a puzzle is being read, so the next call after a format
+    // error skips ahead to the following puzzle
+    private boolean failed;
+
+    public PuzzleParser(Reader in) {
+        this(in, 8192);
+    }
+
+    private PuzzleParser(Reader in, int bufferSize) {
+        this.in = in;
+        this.buffer = new char[bufferSize];
+    }
+
+    public PuzzleParser(ReadableByteChannel channel) {
+        this(Channels.newReader(channel, StandardCharsets.UTF_8));
+    }
+
+    // Parses text holding exactly one puzzle
+    public static CSPPuzzleSolver parse(String text) {
+        // A short text needs no more buffer than its own length
+        int bufferSize = Math.max(16, Math.min(text.length(), 8192));
+        try (PuzzleParser parser = new PuzzleParser(new StringReader(text), bufferSize)) {
+            CSPPuzzleSolver solver = parser.next();
+            if (solver == null) {
+                throw new PuzzleFormatException(1, 1, "expected grid size");
+            }
+            if (parser.pendingSize >= 0) {
+                throw new PuzzleFormatException(parser.pendingLine, parser.pendingColumn, "expected a single puzzle");
+            }
+            return solver;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static CSPPuzzleSolver parse(List<String> lines) {
+        return parse(String.join("\n", lines));
+    }
+
+    // Next puzzle in the stream, or null at the end of input
+    public CSPPuzzleSolver next() throws IOException {
+        if (failed) {
+            failed = false;
+            skipToNextPuzzle();
+        }
+
+        int N;
+        failed = true;
+        if (pendingSize >= 0) {
+            N = pendingSize;
+            tokenLine = pendingLine;
+            tokenColumn = pendingColumn;
+            pendingSize = -1;
+        } else {
+            skipBlankLines();
+            if (peek() < 0) {
+                failed = false;
+                return null;
+            }
+            N = readInt("grid size");
+            endLine();
+        }
+        if (N < 1 || N > DomainStore.MAX_N) {
+            throw error(tokenLine, tokenColumn, "grid size must be between 1 and " + DomainStore.MAX_N);
+        }
+
+        CSPPuzzleSolver solver = new CSPPuzzleSolver(N);
+        while (true) {
+            skipBlankLines();
+            int c = peek();
+            if (c < 0) break;
+            if (c == '#') {
+                read();
+                readGiven(solver, N);
+            } else {
+                int row = readInt("cell row");
+                skipSpaces();
+                if (atLineEnd()) {
+                    // A bare number starts the next puzzle
+                    pendingSize = row;
+                    pendingLine = tokenLine;
+                    pendingColumn = tokenColumn;
+                    endLine();
+                    break;
+                }
+                readGroup(solver, N, row);
+            }
+            endLine();
+        }
+        failed = false;
+        return solver;
+    }
+
+    // r,c;r,c;...->op,target with the first row already read
+    private void readGroup(CSPPuzzleSolver solver, int N, int row) throws IOException {
+        List<Cell> cells = new ArrayList<>();
+        while (true) {
+            checkCoordinate(row, N, "row");
+            expect(',');
+            int col = readInt("cell column");
+            checkCoordinate(col, N, "column");
+            cells.add(new Cell(row, col));
+
+            skipSpaces();
+            if (peek() != ';') break;
+            read();
+            row = readInt("cell row");
+        }
+        expectArrow();
+
+        skipSpaces();
+        int operator = peek();
+        if (operator != '+' && operator != '-' && operator != '*' && operator != '/') {
+            throw error(line, column, "expected operator + - * or /");
+        }
+        read();
+        expect(',');
+        int target = readInt("target");
+        solver.addGroup(cells, (char) operator, target);
+    }
+
+    // #r,c->v with the '#' already read
+    private void readGiven(CSPPuzzleSolver solver, int N) throws IOException {
+        int row = readInt("cell row");
+        checkCoordinate(row, N, "row");
+        expect(',');
+        int col = readInt("cell column");
+        checkCoordinate(col, N, "column");
+        expectArrow();
+        int value = readInt("value");
+        if (value < 1 || value > N) {
+            throw error(tokenLine, tokenColumn, "value must be between 1 and " + N);
+        }
+        solver.addGiven(row, col, value);
+    }
+
+    private void checkCoordinate(int value, int N, String what) {
+        if (value >= N) {
+            throw error(tokenLine, tokenColumn, what + " must be below " + N);
+        }
+    }
+
+    private int readInt(String what) throws IOException {
+        skipSpaces();
+        int c = peek();
+        if (c < '0' || c > '9') {
+            throw error(line, column, "expected " + what);
+        }
+        tokenLine = line;
+        tokenColumn = column;
+        int value = 0;
+        while (c >= '0' && c <= '9') {
+            if (value > (Integer.MAX_VALUE - 9) / 10) {
+                throw error(tokenLine, tokenColumn, what + " is too large");
+            }
+            value = value * 10 + (c - '0');
+            read();
+            c = peek();
+        }
+        return value;
+    }
+
+    private void expect(char expected) throws IOException {
+        skipSpaces();
+        if (peek() != expected) {
+            throw error(line, column, "expected '" + expected + "'");
+        }
+        read();
+    }
+
+    private void expectArrow() throws IOException {
+        skipSpaces();
+        int arrowLine = line, arrowColumn = column;
+        if (peek() != '-') {
+            throw error(arrowLine, arrowColumn, "expected '->'");
+        }
+        read();
+        if (peek() != '>') {
+            throw error(arrowLine, arrowColumn, "expected '->'");
+        }
+        read();
+    }
+
+    private void endLine() throws IOException {
+        skipSpaces();
+        int c = peek();
+        if (c == '\n') {
+            read();
+        } else if (c >= 0) {
+            throw error(line, column, "unexpected '" + (char) c + "'");
+        }
+    }
+
+    private boolean atLineEnd() throws IOException {
+        int c = peek();
+        return c == '\n' || c < 0;
+    }
+
+    // '\r' counts as a space so CRLF input needs no special handling
+    private void skipSpaces() throws IOException {
+        int c = peek();
+        while (c == ' ' || c == '\t' || c == '\r') {
+            read();
+            c = peek();
+        }
+    }
+
+    private void skipBlankLines() throws IOException {
+        while (true) {
+            skipSpaces();
+            if (peek() != '\n') return;
+            read();
+        }
+    }
+
+    // Error recovery: drops lines until the next bare size line
+    private void skipToNextPuzzle() throws IOException {
+        if (pendingSize >= 0) return;
+        if (column != 1) skipLine();
+        while (true) {
+            skipBlankLines();
+            int c = peek();
+            if (c < 0) return;
+            if (c >= '0' && c <= '9') {
+                int size = 0;
+                int sizeLine = line, sizeColumn = column;
+                while (c >= '0' && c <= '9' && size < DomainStore.MAX_N * 10) {
+                    size = size * 10 + (c - '0');
+                    read();
+                    c = peek();
+                }
+                skipSpaces();
+                if (atLineEnd()) {
+                    pendingSize = size;
+                    pendingLine = sizeLine;
+                    pendingColumn = sizeColumn;
+                    endLine();
+                    return;
+                }
+            }
+            skipLine();
+        }
+    }
+
+    private void skipLine() throws IOException {
+        int c;
+        while ((c = read()) >= 0 && c != '\n') {
+            // consume
+        }
+    }
+
+    private int peek() throws IOException {
+        if (position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position];
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        if (c < 0) return -1;
+        position++;
+        if (c == '\n') {
+            line++;
+            column = 1;
+        } else {
+            column++;
+        }
+        return c;
+    }
+
+    private PuzzleFormatException error(int atLine, int atColumn, String message) {
+        return new PuzzleFormatException(atLine, atColumn, message);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
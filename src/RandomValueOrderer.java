@@ -0,0 +1,27 @@
+import java.util.Random;
+
+// Tries values in a random order drawn from a seeded generator, so a run
+// can be reproduced from its seed
+public class RandomValueOrderer implements ValueOrderer {
+    private final Random random;
+
+    RandomValueOrderer(long seed) {
+        this.random = new Random(seed);
+    }
+
+    @Override
+    public int order(int cell, int mask, int[] out) {
+        int count = 0;
+        for (int m = mask; m != 0; m &= m - 1) {
+            out[count++] = DomainStore.lowestValue(m);
+        }
+        // Fisher-Yates
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = out[i];
+            out[i] = out[j];
+            out[j] = tmp;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,71 @@
+import java.util.concurrent.TimeUnit;
+
+// Bounds for one solve: a deadline, a node budget and a cancellation
+// token, all optional. The budget and the token are checked at every
+// search node; the clock and the thread's interrupt flag every
+// CHECK_INTERVAL nodes, which keeps the check to a few instructions.
+// Before the first node, while group tables are built and root
+// propagation runs, the token, clock and interrupt flag are polled too.
+// A SolveProgress, if set, is updated at the same interval.
+// Setters return this: new SearchLimits().timeout(50, TimeUnit.MILLISECONDS)
+public class SearchLimits {
+    static final int CHECK_INTERVAL = 256; // power of two
+
+    long deadline;     // System.nanoTime() value, if hasDeadline
+    boolean hasDeadline;
+    long maxNodes = Long.MAX_VALUE;
+    CancellationToken token;
+    SolveProgress progress;
+
+    // Deadline as a System.nanoTime() value
+    public SearchLimits deadline(long nanoTime) {
+        this.deadline = nanoTime;
+        this.hasDeadline = true;
+        return this;
+    }
+
+    // Deadline relative to now
+    public SearchLimits timeout(long amount, TimeUnit unit) {
+        return deadline(System.nanoTime() + unit.toNanos(amount));
+    }
+
+    // Search nodes allowed. A parallel search shares the budget between its
+    // workers, which draw on it CHECK_INTERVAL nodes at a time.
+    public SearchLimits maxNodes(long maxNodes) {
+        if (maxNodes < 0) {
+            throw new IllegalArgumentException("Node budget must not be negative: " + maxNodes);
+        }
+        this.maxNodes = maxNodes;
+        return this;
+    }
+
+    public SearchLimits token(CancellationToken token) {
+        this.token = token;
+        return this;
+    }
+
+    public SearchLimits progress(SolveProgress progress) {
+        this.progress = progress;
+        return this;
+    }
+
+    public boolean hasDeadline() {
+        return hasDeadline;
+    }
+
+    public long getDeadline() {
+        return deadline;
+    }
+
+    public long getMaxNodes() {
+        return maxNodes;
+    }
+
+    public CancellationToken getToken() {
+        return token;
+    }
+
+    public SolveProgress getProgress() {
+        return progress;
+    }
+}
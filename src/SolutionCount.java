@@ -0,0 +1,78 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Outcome of CSPPuzzleSolver.countSolutions(): how many solutions were
+// found before the search ran out or hit the limit, and the first few of
+// them as row-major grids.
+public class SolutionCount {
+    // Solutions kept beyond this are counted but not stored
+    static final int MAX_STORED = 10;
+
+    private final int limit;
+    private final List<int[][]> solutions = new ArrayList<>();
+    private int count;
+    private long nodes;
+    private SolveStatus stopReason; // TIMEOUT or CANCELLED if SearchLimits cut the count short
+
+    SolutionCount(int limit) {
+        this.limit = limit;
+    }
+
+    // Returns true once the limit is reached and the search should stop
+    boolean record(int[][] grid) {
+        count++;
+        if (solutions.size() < MAX_STORED) {
+            solutions.add(grid);
+        }
+        return count >= limit;
+    }
+
+    void setNodes(long nodes) {
+        this.nodes = nodes;
+    }
+
+    void setStopReason(SolveStatus stopReason) {
+        this.stopReason = stopReason;
+    }
+
+    // SOLVED or UNSAT by count once the search finished or hit the limit,
+    // TIMEOUT or CANCELLED if SearchLimits stopped it before that
+    public SolveStatus getStatus() {
+        if (stopReason != null && !isLimitReached()) return stopReason;
+        return count > 0 ? SolveStatus.SOLVED : SolveStatus.UNSAT;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    // True when the search stopped early, so there may be more solutions
+    public boolean isLimitReached() {
+        return count >= limit;
+    }
+
+    // Exactly one solution, proven by exhausting the search
+    public boolean isUnique() {
+        return count == 1 && !isLimitReached() && stopReason == null;
+    }
+
+    public List<int[][]> getSolutions() {
+        return Collections.unmodifiableList(solutions);
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    @Override
+    public String toString() {
+        String counted = (isLimitReached() ? ">=" : "") + count + " solutions in " + nodes + " nodes";
+        SolveStatus status = getStatus();
+        return status == SolveStatus.TIMEOUT || status == SolveStatus.CANCELLED ? counted + " (" + status + ")" : counted;
+    }
+}
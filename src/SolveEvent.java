@@ -0,0 +1,36 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// JFR event spanning one solvePuzzle() or countSolutions() call. Like all
+// JFR events it costs next to nothing unless a recording enables it, e.g.
+// java -XX:StartFlightRecording:filename=solve.jfr Main
+@Name("csp.Solve")
+@Label("Puzzle Solve")
+@Category("CSP Puzzle Solver")
+@Description("One solvePuzzle() or countSolutions() call")
+class SolveEvent extends Event {
+    @Label("Grid Size")
+    int gridSize;
+
+    @Label("Configuration")
+    String configuration;
+
+    @Label("Solved")
+    boolean solved;
+
+    @Label("Status")
+    @Description("SOLVED, UNSAT, TIMEOUT or CANCELLED")
+    String status;
+
+    @Label("Nodes")
+    long nodes;
+
+    @Label("Backtracks")
+    long backtracks;
+
+    @Label("Max Depth")
+    int maxDepth;
+}
@@ -0,0 +1,49 @@
+import java.util.concurrent.atomic.LongAdder;
+
+// Live view of a running solve for another thread, passed in through
+// SearchLimits.progress(). Every CHECK_INTERVAL nodes the search adds to
+// the node count and records its depth; it copies its grid only when a
+// reader has asked for a snapshot since the last copy. Nothing here
+// blocks, so a slow reader never holds the search up.
+public class SolveProgress {
+    private final LongAdder nodes = new LongAdder(); // summed over parallel workers
+    private volatile int depth;
+    private volatile boolean snapshotWanted;
+    private volatile int[] snapshot; // grid values by cell index
+
+    // Nodes searched so far, to within CHECK_INTERVAL per worker
+    public long getNodes() {
+        return nodes.sum();
+    }
+
+    // Depth of the latest report; with parallel workers, the one that reported last
+    public int getDepth() {
+        return depth;
+    }
+
+    // Asks the search for a copy of its grid at its next report
+    public void requestSnapshot() {
+        snapshotWanted = true;
+    }
+
+    // The grid copied since the last call, by cell index, or null
+    public int[] takeSnapshot() {
+        int[] values = snapshot;
+        snapshot = null;
+        return values;
+    }
+
+    void report(long nodesSinceLast, int depth) {
+        nodes.add(nodesSinceLast);
+        this.depth = depth;
+    }
+
+    boolean wantsSnapshot() {
+        return snapshotWanted;
+    }
+
+    void offerSnapshot(int[] values) {
+        snapshotWanted = false;
+        snapshot = values;
+    }
+}
@@ -0,0 +1,8 @@
+// Outcome of a solve run with SearchLimits
+public enum SolveStatus {
+    SOLVED,    // a solution is in the grid
+    UNSAT,     // the search proved there is no solution
+    TIMEOUT,   // the deadline or the node budget ran out first
+    CANCELLED, // the token was cancelled or the solving thread interrupted
+    ERROR      // every entrant of a PortfolioSolver race threw; never from a single solver
+}
@@ -0,0 +1,10 @@
+// Algorithm behind solvePuzzle(). Both engines start from the same root
+// propagation and fill the same grid.
+public enum SolverEngine {
+    // Backtracking search over the bitmask domains, with the propagation
+    // and heuristics the other options select
+    CSP,
+    // CNF encoding of the root-propagated model (see PuzzleCnf) solved by
+    // the clause-learning CdclSolver; always sequential
+    SAT
+}
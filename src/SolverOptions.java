@@ -0,0 +1,131 @@
+// Settings for one solvePuzzle() run. Setters return this so options can
+// be chained: new SolverOptions().propagationLevel(PropagationLevel.MAC)
+public class SolverOptions {
+    PropagationLevel propagationLevel = PropagationLevel.CAGE_FORWARD_CHECK;
+    AllDifferentMode allDifferentMode = AllDifferentMode.PAIRWISE;
+    VariableHeuristic variableHeuristic = VariableHeuristic.MRV;
+    ValueHeuristic valueHeuristic = ValueHeuristic.ASCENDING;
+    long seed;
+    int parallelism = 1;
+    boolean backjumping;
+    int nogoodLimit = 200;
+    RestartSchedule restarts; // null: one run to the end
+    SolverEngine engine = SolverEngine.CSP;
+
+    public SolverOptions propagationLevel(PropagationLevel level) {
+        this.propagationLevel = level;
+        return this;
+    }
+
+    public SolverOptions allDifferentMode(AllDifferentMode mode) {
+        this.allDifferentMode = mode;
+        return this;
+    }
+
+    public SolverOptions variableHeuristic(VariableHeuristic heuristic) {
+        this.variableHeuristic = heuristic;
+        return this;
+    }
+
+    public SolverOptions valueHeuristic(ValueHeuristic heuristic) {
+        this.valueHeuristic = heuristic;
+        return this;
+    }
+
+    // Seed for the randomized heuristics
+    public SolverOptions seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    // Worker threads for the search; above 1 the search tree is split
+    // across a ForkJoinPool
+    public SolverOptions parallelism(int parallelism) {
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    // Conflict-directed backjumping with nogood learning instead of
+    // chronological backtracking
+    public SolverOptions backjumping(boolean backjumping) {
+        this.backjumping = backjumping;
+        return this;
+    }
+
+    // Nogoods kept by the backjumping search; 0 turns learning off. Larger
+    // stores prune a few more nodes but cost more per decision than they save
+    public SolverOptions nogoodLimit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Nogood limit must not be negative: " + limit);
+        }
+        this.nogoodLimit = limit;
+        return this;
+    }
+
+    // Restarts the sequential search from the root whenever a run uses up
+    // its node budget, breaking ties in the variable and value orderings at
+    // random from the seed. Conflict weights, nogoods and values refuted at
+    // the root carry over from run to run. Null turns restarts off;
+    // RestartSchedule.geometric(10_000, 2) is the one to try first.
+    public SolverOptions restarts(RestartSchedule schedule) {
+        this.restarts = schedule;
+        return this;
+    }
+
+    // SAT hands the root-propagated puzzle to the CDCL solver instead of the
+    // backtracking search; the search options above then do not apply
+    public SolverOptions engine(SolverEngine engine) {
+        this.engine = engine;
+        return this;
+    }
+
+    public PropagationLevel getPropagationLevel() {
+        return propagationLevel;
+    }
+
+    public AllDifferentMode getAllDifferentMode() {
+        return allDifferentMode;
+    }
+
+    public VariableHeuristic getVariableHeuristic() {
+        return variableHeuristic;
+    }
+
+    public ValueHeuristic getValueHeuristic() {
+        return valueHeuristic;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public boolean isBackjumping() {
+        return backjumping;
+    }
+
+    public int getNogoodLimit() {
+        return nogoodLimit;
+    }
+
+    public RestartSchedule getRestarts() {
+        return restarts;
+    }
+
+    public SolverEngine getEngine() {
+        return engine;
+    }
+
+    @Override
+    public String toString() {
+        // Only the root AllDifferent filtering carries over to the SAT engine
+        if (engine == SolverEngine.SAT) return "SAT/" + allDifferentMode;
+        return propagationLevel + "/" + allDifferentMode + "/" + variableHeuristic + "/" + valueHeuristic
+                + (valueHeuristic == ValueHeuristic.RANDOM || restarts != null ? "/seed=" + seed : "")
+                + (backjumping ? "/CBJ" + (nogoodLimit > 0 ? "+nogoods" : "") : "")
+                + (restarts != null ? "/restarts=" + restarts : "");
+    }
+}
@@ -0,0 +1,240 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+// Interactive play on one puzzle: the model is built and propagated once,
+// and every user digit after that is an assignment on the solver's trail.
+// Placing a digit costs one propagation, undoing the latest one a trail
+// pop; clearing an older digit pops back to it and replays the digits
+// placed after it. A digit that breaks the puzzle is kept on the board
+// but not propagated, and the board counts as unsolvable until it goes.
+//
+// isSolvable() remembers the last completion it found and reuses it for
+// as long as every placed digit agrees with it, so a player who keeps
+// placing correct digits never triggers another search.
+public class SolverSession {
+    private final CSPPuzzleSolver solver;
+    private final int N;
+    private final boolean rootConsistent; // false if the givens and cages alone have no solution
+
+    // Placed digits in placement order; applied ones own a trail level each
+    private final List<Move> moves = new ArrayList<>();
+    private final int[] board;       // user digits by cell index, 0 if empty
+    private int deadMoves;           // placed digits that failed propagation
+    private final Deque<int[]> history = new ArrayDeque<>(); // (cell, previous digit) per edit
+
+    private int[] solution;          // completion of the board, if known
+    private boolean unsolvable;      // proven for the current board, if true
+
+    private static class Move {
+        final int cell;
+        final int value;
+        boolean applied;
+
+        Move(int cell, int value) {
+            this.cell = cell;
+            this.value = value;
+        }
+    }
+
+    // A cell to fill next. forced means propagation leaves it a single
+    // value; otherwise the value comes from a completion of the board.
+    public static class Hint {
+        public final int row;
+        public final int col;
+        public final int value;
+        public final boolean forced;
+
+        Hint(int row, int col, int value, boolean forced) {
+            this.row = row;
+            this.col = col;
+            this.value = value;
+            this.forced = forced;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + row + "," + col + ") = " + value + (forced ? " (forced)" : "");
+        }
+    }
+
+    public SolverSession(CSPPuzzleSolver puzzle) {
+        this(puzzle, new SolverOptions());
+    }
+
+    // The session takes the solver over; it must not be used on its own
+    // while the session is in use
+    public SolverSession(CSPPuzzleSolver puzzle, SolverOptions options) {
+        if (options.parallelism > 1) {
+            throw new IllegalArgumentException("A session searches sequentially: " + options);
+        }
+        this.solver = puzzle;
+        this.N = puzzle.getN();
+        this.board = new int[N * N];
+        this.rootConsistent = puzzle.prepare(options);
+        this.unsolvable = !rootConsistent;
+    }
+
+    public int getN() {
+        return N;
+    }
+
+    // Digit at a cell: a given, a placed digit, or 0
+    public int getValueAt(int row, int col) {
+        checkRange(row, col);
+        int given = solver.getGivenAt(row, col);
+        return given != 0 ? given : board[row * N + col];
+    }
+
+    // Values the cell can still take after propagating the placed digits,
+    // as bits (value v is bit v - 1); 0 while the board is broken
+    public int getCandidates(int row, int col) {
+        checkRange(row, col);
+        if (!rootConsistent || deadMoves > 0) return 0;
+        return solver.candidates(row * N + col);
+    }
+
+    // Places a digit, replacing any digit already in the cell. Returns
+    // false if the digit contradicts the givens, the cages or the other
+    // placed digits; it stays on the board either way.
+    public boolean place(int row, int col, int value) {
+        checkCell(row, col);
+        if (value < 1 || value > N) {
+            throw new IllegalArgumentException("Value out of range 1.." + N + ": " + value);
+        }
+        int cell = row * N + col;
+        history.push(new int[] {cell, board[cell]});
+        return set(cell, value);
+    }
+
+    // Removes the digit placed in a cell, if any
+    public void clear(int row, int col) {
+        checkCell(row, col);
+        int cell = row * N + col;
+        if (board[cell] == 0) return;
+        history.push(new int[] {cell, board[cell]});
+        set(cell, 0);
+    }
+
+    // Reverts the latest place() or clear(); false if there is none
+    public boolean undo() {
+        int[] edit = history.poll();
+        if (edit == null) return false;
+        set(edit[0], edit[1]);
+        return true;
+    }
+
+    // True while no placed digit failed propagation
+    public boolean isConsistent() {
+        return rootConsistent && deadMoves == 0;
+    }
+
+    public boolean isSolvable() {
+        return checkSolvable(new SearchLimits()) == SolveStatus.SOLVED;
+    }
+
+    // SOLVED if the placed digits can be completed to a solution, UNSAT if
+    // they cannot, TIMEOUT or CANCELLED if the limits stopped the search
+    public SolveStatus checkSolvable(SearchLimits limits) {
+        if (unsolvable || deadMoves > 0) return SolveStatus.UNSAT;
+        if (solution != null) return SolveStatus.SOLVED;
+        solution = solver.probe(limits);
+        if (solution != null) return SolveStatus.SOLVED;
+        SolveStatus reason = solver.getStopReason();
+        if (reason != null) return reason;
+        unsolvable = true;
+        return SolveStatus.UNSAT;
+    }
+
+    // The next cell to fill: an empty cell propagation has narrowed to one
+    // value if there is one, else the empty cell with the fewest candidates
+    // and its value in a completion of the board. Null once the board is
+    // full or cannot be completed.
+    public Hint hint() {
+        if (!isConsistent() || unsolvable) return null;
+        int best = -1;
+        int bestSize = Integer.MAX_VALUE;
+        for (int c = 0; c < board.length; c++) {
+            if (board[c] != 0 || solver.getGivenAt(c / N, c % N) != 0) continue;
+            int size = Integer.bitCount(solver.candidates(c));
+            if (size == 1) {
+                return new Hint(c / N, c % N, DomainStore.lowestValue(solver.candidates(c)), true);
+            }
+            if (size < bestSize) {
+                best = c;
+                bestSize = size;
+            }
+        }
+        if (best < 0 || !isSolvable()) return null;
+        return new Hint(best / N, best % N, solution[best], false);
+    }
+
+    // Makes the cell hold value (0 to empty it), keeping the trail in
+    // placement order
+    private boolean set(int cell, int value) {
+        int previous = board[cell];
+        if (previous != 0) {
+            remove(cell);
+            // Fewer digits can only make the board easier
+            unsolvable = !rootConsistent;
+        }
+        if (value == 0) return true;
+        board[cell] = value;
+        Move move = new Move(cell, value);
+        moves.add(move);
+        apply(move);
+        if (solution != null && solution[cell] != value) solution = null;
+        return move.applied;
+    }
+
+    // Takes back the move of a cell: pops every later move, drops it and
+    // reapplies the later ones
+    private void remove(int cell) {
+        int at = moves.size() - 1;
+        while (moves.get(at).cell != cell) at--;
+        for (int k = moves.size() - 1; k >= at; k--) {
+            retract(moves.get(k));
+        }
+        moves.remove(at);
+        board[cell] = 0;
+        for (int k = at; k < moves.size(); k++) {
+            apply(moves.get(k));
+        }
+    }
+
+    private void apply(Move move) {
+        move.applied = rootConsistent && deadMoves == 0
+                && (solver.candidates(move.cell) & DomainStore.bit(move.value)) != 0
+                && solver.assign(move.cell, move.value);
+        if (move.applied) {
+            solver.markAssigned(move.cell);
+        } else {
+            deadMoves++;
+        }
+    }
+
+    private void retract(Move move) {
+        if (move.applied) {
+            solver.unassign(move.cell);
+            solver.markUnassigned(move.cell);
+            move.applied = false;
+        } else {
+            deadMoves--;
+        }
+    }
+
+    private void checkRange(int row, int col) {
+        if (row < 0 || row >= N || col < 0 || col >= N) {
+            throw new IllegalArgumentException("Cell out of range: (" + row + "," + col + ")");
+        }
+    }
+
+    // Givens are part of the puzzle and cannot be edited
+    private void checkCell(int row, int col) {
+        checkRange(row, col);
+        if (solver.getGivenAt(row, col) != 0) {
+            throw new IllegalArgumentException("Cell (" + row + "," + col + ") holds a given");
+        }
+    }
+}
@@ -0,0 +1,122 @@
+// Counters and timings of the last solve, from CSPPuzzleSolver.getStats().
+// The solver and its propagators update the fields directly; callers get a
+// copy through the getters. With the SAT engine, nodes are decisions,
+// backtracks conflicts, maxDepth the deepest decision level and nogoods
+// the learnt clauses.
+public class SolverStats {
+    long nodes;                // search nodes visited
+    long backtracks;           // values tried and then abandoned
+    int maxDepth;              // deepest assignment level reached
+    long forwardCheckPrunings; // values removed by forward checking
+    long arcRevisions;         // AC-3 revise() calls
+    long arcValuesRemoved;     // values removed by AC-3
+    long arcNanos;             // time in AC-3, at the root and during search
+    long searchNanos;          // time in the backtracking search
+    long backjumps;            // levels left without trying their other values
+    long nogoodsLearned;       // nogoods stored by the backjumping search
+    long nogoodPrunings;       // values skipped because a nogood ruled them out
+    long restarts;             // runs given up when their node budget ran out
+    long rootPrunings;         // values removed at the root after a run refuted them
+
+    void reset() {
+        nodes = 0;
+        backtracks = 0;
+        maxDepth = 0;
+        forwardCheckPrunings = 0;
+        arcRevisions = 0;
+        arcValuesRemoved = 0;
+        arcNanos = 0;
+        searchNanos = 0;
+        backjumps = 0;
+        nogoodsLearned = 0;
+        nogoodPrunings = 0;
+        restarts = 0;
+        rootPrunings = 0;
+    }
+
+    // Folds in the counters of a parallel worker; timings stay with the
+    // caller, which measures the search as a whole
+    synchronized void add(SolverStats other) {
+        nodes += other.nodes;
+        backtracks += other.backtracks;
+        maxDepth = Math.max(maxDepth, other.maxDepth);
+        forwardCheckPrunings += other.forwardCheckPrunings;
+        arcRevisions += other.arcRevisions;
+        arcValuesRemoved += other.arcValuesRemoved;
+        arcNanos += other.arcNanos;
+        backjumps += other.backjumps;
+        nogoodsLearned += other.nogoodsLearned;
+        nogoodPrunings += other.nogoodPrunings;
+        restarts += other.restarts;
+        rootPrunings += other.rootPrunings;
+    }
+
+    SolverStats copy() {
+        SolverStats copy = new SolverStats();
+        copy.add(this);
+        copy.searchNanos = searchNanos;
+        return copy;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getBacktracks() {
+        return backtracks;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getForwardCheckPrunings() {
+        return forwardCheckPrunings;
+    }
+
+    public long getArcRevisions() {
+        return arcRevisions;
+    }
+
+    public long getArcValuesRemoved() {
+        return arcValuesRemoved;
+    }
+
+    public long getArcNanos() {
+        return arcNanos;
+    }
+
+    public long getSearchNanos() {
+        return searchNanos;
+    }
+
+    public long getBackjumps() {
+        return backjumps;
+    }
+
+    public long getNogoodsLearned() {
+        return nogoodsLearned;
+    }
+
+    public long getNogoodPrunings() {
+        return nogoodPrunings;
+    }
+
+    public long getRestarts() {
+        return restarts;
+    }
+
+    public long getRootPrunings() {
+        return rootPrunings;
+    }
+
+    @Override
+    public String toString() {
+        return "nodes=" + nodes + " backtracks=" + backtracks + " maxDepth=" + maxDepth
+                + " fcPrunings=" + forwardCheckPrunings + " arcRevisions=" + arcRevisions
+                + " arcRemoved=" + arcValuesRemoved + " arcNanos=" + arcNanos + " searchNanos=" + searchNanos
+                + (backjumps + nogoodsLearned + nogoodPrunings > 0 ? " backjumps=" + backjumps
+                        + " nogoods=" + nogoodsLearned + " nogoodPrunings=" + nogoodPrunings : "")
+                + (restarts > 0 ? " restarts=" + restarts + " rootPrunings=" + rootPrunings : "");
+    }
+}
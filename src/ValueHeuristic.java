@@ -0,0 +1,9 @@
+// Value ordering strategies selectable through SolverOptions
+public enum ValueHeuristic {
+    // Smallest value first
+    ASCENDING,
+    // Values ruling out the fewest options of unassigned peers first
+    LEAST_CONSTRAINING,
+    // Shuffled with the seed from SolverOptions
+    RANDOM
+}
@@ -0,0 +1,5 @@
+// Decides the order in which the values of a cell's domain are tried
+public interface ValueOrderer {
+    // Writes the values of mask into out in trial order and returns their count
+    int order(int cell, int mask, int[] out);
+}
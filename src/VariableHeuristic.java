@@ -0,0 +1,10 @@
+// Variable ordering strategies selectable through SolverOptions
+public enum VariableHeuristic {
+    // Minimum remaining values, kept in a bucket queue for O(1) selection
+    MRV,
+    // MRV, ties broken by the most unassigned row, column and group peers
+    MRV_DEGREE,
+    // Smallest domain size divided by the weighted degree, where a
+    // constraint's weight counts the wipe-outs it caused
+    DOM_WDEG
+}
@@ -0,0 +1,15 @@
+// Picks the next cell to branch on. The solver reports assignments so
+// selectors can keep incremental state, and reports the constraint behind
+// every domain wipe-out for conflict-driven heuristics.
+public interface VariableSelector {
+    // Unassigned cell index to branch on, or -1 once every cell is assigned
+    int select();
+
+    void assigned(int cell);
+
+    void unassigned(int cell);
+
+    // Constraint id (see ConstraintIndex) whose propagation emptied a domain
+    default void conflict(int constraint) {
+    }
+}